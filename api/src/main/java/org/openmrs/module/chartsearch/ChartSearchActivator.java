@@ -9,14 +9,19 @@
  */
 package org.openmrs.module.chartsearch;
 
+import java.util.Calendar;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.BaseModuleActivator;
-import org.openmrs.module.chartsearch.solr.ChartSearchIndexer;
+import org.openmrs.module.chartsearch.solr.PrewarmAppointmentsTask;
 import org.openmrs.module.chartsearch.solr.SolrManagement;
+import org.openmrs.module.chartsearch.solr.SolrSingleton;
+import org.openmrs.scheduler.SchedulerException;
+import org.openmrs.scheduler.SchedulerService;
+import org.openmrs.scheduler.TaskDefinition;
 
 /**
  * This class contains the logic that is run every time this module is either started or stopped. *
@@ -52,8 +57,42 @@ public class ChartSearchActivator extends BaseModuleActivator {
 	public void started() {
 		log.info("Chart Search Module started");
 		
-		ChartSearchIndexer indexer = getComponent(ChartSearchIndexer.class);
-		indexer.getStatistics();
+		// creates the server once for all callers, the embedded core then loads in the background
+		SolrSingleton.getInstance();
+		registerPrewarmTask();
+	}
+	
+	/**
+	 * Schedules the appointments pre-indexing daily at 2 AM unless it is registered already, the
+	 * time can be changed in the scheduler afterwards
+	 */
+	private void registerPrewarmTask() {
+		SchedulerService schedulerService = Context.getSchedulerService();
+		if (schedulerService.getTaskByName(ChartSearchMainProperties.PREWARM_TASK_NAME) != null)
+			return;
+		
+		Calendar startTime = Calendar.getInstance();
+		startTime.set(Calendar.HOUR_OF_DAY, 2);
+		startTime.set(Calendar.MINUTE, 0);
+		startTime.set(Calendar.SECOND, 0);
+		if (startTime.getTimeInMillis() < System.currentTimeMillis()) {
+			startTime.add(Calendar.DAY_OF_MONTH, 1);
+		}
+		
+		TaskDefinition task = new TaskDefinition();
+		task.setName(ChartSearchMainProperties.PREWARM_TASK_NAME);
+		task.setDescription("Indexes the patients of upcoming appointments before clinic opens");
+		task.setTaskClass(PrewarmAppointmentsTask.class.getName());
+		task.setStartTime(startTime.getTime());
+		task.setRepeatInterval(24 * 60 * 60L);
+		task.setStartOnStartup(true);
+		try {
+			schedulerService.saveTask(task);
+			schedulerService.scheduleTask(task);
+		}
+		catch (SchedulerException e) {
+			log.error("Failed to schedule " + ChartSearchMainProperties.PREWARM_TASK_NAME, e);
+		}
 	}
 	
 	/**
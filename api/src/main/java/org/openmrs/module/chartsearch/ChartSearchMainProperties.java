@@ -23,4 +23,48 @@ public class ChartSearchMainProperties {
 	
 	public static final String DEDICATED_SOLR_SERVER_URL = MODULE_ID + ".httpSolrUrl";
 	
+	public static final String HTTP_SOLR_SHARD_URLS = MODULE_ID + ".httpSolr.shardUrls";
+	
+	public static final String HTTP_SOLR_MAX_CONNECTIONS = MODULE_ID + ".httpSolr.maxConnections";
+	
+	public static final String HTTP_SOLR_MAX_CONNECTIONS_PER_HOST = MODULE_ID + ".httpSolr.maxConnectionsPerHost";
+	
+	public static final String HTTP_SOLR_CONNECTION_TIMEOUT = MODULE_ID + ".httpSolr.connectionTimeout";
+	
+	public static final String HTTP_SOLR_SOCKET_TIMEOUT = MODULE_ID + ".httpSolr.socketTimeout";
+	
+	public static final String HTTP_SOLR_UPDATE_QUEUE_SIZE = MODULE_ID + ".httpSolr.updateQueueSize";
+	
+	public static final String HTTP_SOLR_UPDATE_THREADS = MODULE_ID + ".httpSolr.updateThreads";
+	
+	public static final String SOFT_COMMIT_INTERVAL = MODULE_ID + ".softCommitInterval";
+	
+	public static final String AUTO_COMMIT_MAX_TIME = MODULE_ID + ".autoCommitMaxTime";
+	
+	public static final String IMPORT_WAIT_TIMEOUT = MODULE_ID + ".importWaitTimeout";
+	
+	public static final long DEFAULT_IMPORT_WAIT_TIMEOUT = 3000; // milliseconds
+	
+	public static final String LAZY_HIGHLIGHTING = MODULE_ID + ".highlight.lazy";
+	
+	public static final String BULK_INDEXING_BATCH_SIZE = MODULE_ID + ".bulkIndexing.batchSize";
+	
+	public static final int DEFAULT_BULK_INDEXING_BATCH_SIZE = 1000; // documents
+	
+	public static final String BULK_INDEXING_COMMIT_INTERVAL = MODULE_ID + ".bulkIndexing.commitInterval";
+	
+	public static final int DEFAULT_BULK_INDEXING_COMMIT_INTERVAL = 50000; // documents
+	
+	public static final String BULK_INDEXING_WORKERS = MODULE_ID + ".bulkIndexing.workers";
+	
+	public static final int DEFAULT_BULK_INDEXING_WORKERS = 4;
+	
+	public static final String BULK_INDEXING_THROTTLE = MODULE_ID + ".bulkIndexing.throttle";
+	
+	public static final String PREWARM_WINDOW = MODULE_ID + ".prewarm.window";
+	
+	public static final int DEFAULT_PREWARM_WINDOW = 24; // hours
+	
+	public static final String PREWARM_TASK_NAME = "Chart Search Appointments Pre-indexing";
+	
 }
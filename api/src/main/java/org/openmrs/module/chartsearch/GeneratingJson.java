@@ -35,7 +35,8 @@ import org.openmrs.module.chartsearch.cache.ChartSearchHistory;
 import org.openmrs.module.chartsearch.cache.ChartSearchNote;
 import org.openmrs.module.chartsearch.cache.ChartSearchPreference;
 import org.openmrs.module.chartsearch.categories.CategoryFilter;
-import org.openmrs.module.chartsearch.solr.ChartSearchSearcher;
+import org.openmrs.module.chartsearch.solr.SearchFacets;
+import org.openmrs.module.chartsearch.solr.Timeline;
 
 /**
  * Responsible for generating the JSON object to be returned to the view(s)
@@ -93,6 +94,10 @@ public class GeneratingJson {
 		
 		jsonToReturn.put("noResults", noResults);
 		jsonToReturn.put("retrievalTime", SearchAPI.getInstance().getRetrievalTime());
+		jsonToReturn.put("bytesTransferred", SearchAPI.getSearchStatus().getBytesTransferred());
+		jsonToReturn.put("possiblyStale", SearchAPI.getSearchStatus().isPossiblyStale());
+		jsonToReturn.put("warming", SearchAPI.getSearchStatus().isWarming());
+		jsonToReturn.put("loadFailed", SearchAPI.getSearchStatus().isLoadFailed());
 		jsonToReturn.put("searchSuggestions", searchSuggestions);
 		jsonToReturn.put("searchHistory", history);
 		jsonToReturn.put("searchBookmarks", bookmarks);
@@ -104,6 +109,7 @@ public class GeneratingJson {
 		jsonToReturn.put("categoryFilters", generateAllCategoriesJSON());
 		
 		addBothPersonalAndGlobalNotesToJSON(searchPhrase, patientId, jsonToReturn);
+		SearchAPI.clearSearchStatus();
 		
 		return jsonToReturn.toString();
 	}
@@ -370,15 +376,29 @@ public class GeneratingJson {
 		JSONArray arr_of_facets = new JSONArray();
 		JSONObject facet = new JSONObject();
 		LinkedList<Count> facets = new LinkedList<Count>();
+		SearchFacets searchFacets = SearchAPI.getSearchStatus().getFacets();
 		
-		facets.addAll(ChartSearchSearcher.getFacetFieldValueNamesAndCounts());
+		facets.addAll(searchFacets.getCounts(SearchFacets.CONCEPT_CLASS));
 		if (!facets.isEmpty()) {
 			for (int i = facets.indexOf(facets.getFirst()); i <= facets.indexOf(facets.getLast()); i++) {
-				facet.put("facet", generateFacetsJson(facets.get(i)));
+				JSONObject counts = generateFacetsJson(facets.get(i));
+				// categories are matched by their lowercased name
+				counts.put("name", facets.get(i).getName().toLowerCase());
+				facet.put("facet", counts);
 				arr_of_facets.add(facet);
 			}
 		}
 		jsonToReturn.put("facets", arr_of_facets);
+		
+		JSONObject dimensions = new JSONObject();
+		for (String dimension : searchFacets.getDimensions()) {
+			JSONArray values = new JSONArray();
+			for (Count count : searchFacets.getCounts(dimension)) {
+				values.add(generateFacetsJson(count));
+			}
+			dimensions.put(dimension, values);
+		}
+		jsonToReturn.put("facetDimensions", dimensions);
 	}
 	
 	@SuppressWarnings("unused")
@@ -677,6 +697,35 @@ public class GeneratingJson {
 		return encounters;
 	}
 	
+	/**
+	 * Timeline buckets with their start in milliseconds, as the flot timeline plots them
+	 */
+	public static JSONObject generateTimelineJson(Timeline timeline) {
+		JSONObject json = new JSONObject();
+		if (timeline == null)
+			return json;
+		
+		json.put("granularity", timeline.getGranularity().name());
+		json.put("from", timeline.getFrom().getTime());
+		json.put("to", timeline.getTo().getTime());
+		JSONArray buckets = new JSONArray();
+		for (Timeline.Bucket bucket : timeline.getBuckets()) {
+			JSONObject jsonBucket = new JSONObject();
+			jsonBucket.put("start", bucket.getStart().getTime());
+			jsonBucket.put("obs", bucket.getObsCount());
+			jsonBucket.put("encounters", bucket.getEncounterCount());
+			jsonBucket.put("appointments", bucket.getAppointmentCount());
+			JSONArray concepts = new JSONArray();
+			for (Count concept : bucket.getTopConcepts()) {
+				concepts.add(generateFacetsJson(concept));
+			}
+			jsonBucket.put("topConcepts", concepts);
+			buckets.add(jsonBucket);
+		}
+		json.put("buckets", buckets);
+		return json;
+	}
+	
 	public static JSONObject generateFacetsJson(Count facet) {
 		JSONObject counts = new JSONObject();
 		counts.put("name", facet.getName());
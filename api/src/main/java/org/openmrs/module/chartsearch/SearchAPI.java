@@ -15,8 +15,12 @@ import java.util.List;
 
 import net.sf.json.JSONObject;
 
+import org.apache.commons.lang.math.NumberUtils;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.chartsearch.server.CountingBinaryResponseParser;
+import org.openmrs.module.chartsearch.solr.ChartSearchIndexer;
 import org.openmrs.module.chartsearch.solr.ChartSearchSearcher;
+import org.openmrs.module.chartsearch.solr.SolrSingleton;
 import org.openmrs.module.chartsearch.synonyms.SynonymsAPI;
 
 /**
@@ -38,6 +42,8 @@ public class SearchAPI {
 	
 	private ChartSearchSearcher searcher = getComponent(ChartSearchSearcher.class);
 	
+	private ChartSearchIndexer indexer = getComponent(ChartSearchIndexer.class);
+	
 	/**
 	 * A collection of filtering category item chosen/selected from the user interface
 	 */
@@ -53,6 +59,17 @@ public class SearchAPI {
 	 */
 	private static Integer patientId;
 	
+	/**
+	 * Status of the search made by the current request, read back when its JSON is generated
+	 */
+	private static final ThreadLocal<SearchStatus> searchStatus = new ThreadLocal<SearchStatus>() {
+		
+		@Override
+		protected SearchStatus initialValue() {
+			return new SearchStatus();
+		}
+	};
+	
 	public static SearchAPI getInstance() {
 		if (instance == null) {
 			instance = new SearchAPI();
@@ -117,7 +134,17 @@ public class SearchAPI {
 		
 		System.out.println("finalPhrase :" + finalPhrase);
 		
+		SearchStatus status = new SearchStatus();
+		searchStatus.set(status);
 		double startSearchingTime = new Date().getTime();
+		status.setLoadFailed(SolrSingleton.getInstance().isFailed());
+		status.setWarming(!status.isLoadFailed() && !SolrSingleton.getInstance().isReady());
+		if (status.isLoadFailed() || status.isWarming()) {
+			SearchAPI.retrievalTime = 0;
+			return items;
+		}
+		status.setPossiblyStale(!indexer.awaitPatientImport(patientId, getImportWaitTimeout(), true));
+		CountingBinaryResponseParser.resetThreadBytes();
 		try {
 			items = searcher.getDocumentList(patientId, finalPhrase, start, length, getSelectedCategoryNames()); //searching for the phrase.
 			
@@ -129,6 +156,7 @@ public class SearchAPI {
 			e.printStackTrace();
 		}
 		double endSearchingTime = new Date().getTime();
+		status.setBytesTransferred(CountingBinaryResponseParser.resetThreadBytes());
 		
 		SearchAPI.retrievalTime = (endSearchingTime - startSearchingTime) / 1000.0;
 		
@@ -169,4 +197,25 @@ public class SearchAPI {
 		return patientId;
 	}
 	
+	/**
+	 * @return the status of the last search made by the current request
+	 */
+	public static SearchStatus getSearchStatus() {
+		return searchStatus.get();
+	}
+	
+	/**
+	 * Forgets the status of the current request's search once it has been returned, the request
+	 * thread is reused for other users
+	 */
+	public static void clearSearchStatus() {
+		searchStatus.remove();
+	}
+	
+	private long getImportWaitTimeout() {
+		String timeout = Context.getAdministrationService().getGlobalProperty(
+		    ChartSearchMainProperties.IMPORT_WAIT_TIMEOUT);
+		return NumberUtils.toLong(timeout, ChartSearchMainProperties.DEFAULT_IMPORT_WAIT_TIMEOUT);
+	}
+	
 }
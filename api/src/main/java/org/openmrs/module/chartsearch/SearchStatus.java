@@ -0,0 +1,85 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch;
+
+import org.openmrs.module.chartsearch.solr.SearchFacets;
+
+/**
+ * How a single search went, kept with the request that made it rather than shared between users
+ */
+public class SearchStatus {
+	
+	private boolean possiblyStale;
+	
+	private boolean warming;
+	
+	private boolean loadFailed;
+	
+	private long bytesTransferred;
+	
+	private SearchFacets facets = new SearchFacets();
+	
+	/**
+	 * @return true if the search ran before the patient's pending import had finished
+	 */
+	public boolean isPossiblyStale() {
+		return possiblyStale;
+	}
+	
+	public void setPossiblyStale(boolean possiblyStale) {
+		this.possiblyStale = possiblyStale;
+	}
+	
+	/**
+	 * @return true if the search found the Solr core still loading and returned no results
+	 */
+	public boolean isWarming() {
+		return warming;
+	}
+	
+	public void setWarming(boolean warming) {
+		this.warming = warming;
+	}
+	
+	/**
+	 * @return true if the search returned no results because the Solr core failed to load
+	 */
+	public boolean isLoadFailed() {
+		return loadFailed;
+	}
+	
+	public void setLoadFailed(boolean loadFailed) {
+		this.loadFailed = loadFailed;
+	}
+	
+	/**
+	 * @return response bytes read from a dedicated Solr server by the search, 0 with the embedded
+	 *         one
+	 */
+	public long getBytesTransferred() {
+		return bytesTransferred;
+	}
+	
+	public void setBytesTransferred(long bytesTransferred) {
+		this.bytesTransferred = bytesTransferred;
+	}
+	
+	/**
+	 * @return the counts of all facet dimensions of the observations search
+	 */
+	public SearchFacets getFacets() {
+		return facets;
+	}
+	
+	public void setFacets(SearchFacets facets) {
+		this.facets = facets;
+	}
+	
+}
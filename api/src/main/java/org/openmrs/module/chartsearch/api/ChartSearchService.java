@@ -9,12 +9,12 @@
  */
 package org.openmrs.module.chartsearch.api;
 
+import java.util.Date;
 import java.util.List;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
-import org.apache.solr.client.solrj.SolrServer;
 import org.openmrs.api.APIException;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.module.chartsearch.cache.ChartSearchBookmark;
@@ -23,6 +23,7 @@ import org.openmrs.module.chartsearch.cache.ChartSearchHistory;
 import org.openmrs.module.chartsearch.cache.ChartSearchNote;
 import org.openmrs.module.chartsearch.cache.ChartSearchPreference;
 import org.openmrs.module.chartsearch.categories.CategoryFilter;
+import org.openmrs.module.chartsearch.solr.Timeline;
 import org.openmrs.module.chartsearch.synonyms.Synonym;
 import org.openmrs.module.chartsearch.synonyms.SynonymGroup;
 import org.springframework.transaction.annotation.Transactional;
@@ -182,10 +183,30 @@ public interface ChartSearchService extends OpenmrsService {
 	
 	void addLocationsToJSONToReturn(JSONObject jsonToReturn, JSONArray arr_of_locations);
 	
-	void indexAllPatientData(Integer numberOfResults, SolrServer solrServer, Class showProgressToClass);
-	
 	public List<String> getAllPossibleSearchSuggestions(Integer patientId);
 	
+	/**
+	 * Completes a typed prefix with the matching category names followed by the most frequent
+	 * matching names indexed for the patient
+	 * 
+	 * @param patientId the patient whose index is completed
+	 * @param prefix the text typed so far
+	 * @param limit maximum number of completions
+	 * @return the completions, empty when nothing matches or the index can not be reached
+	 */
+	public List<String> getTypeAheadSuggestions(Integer patientId, String prefix, int limit);
+	
+	/**
+	 * Counts the patient's obs, encounters and appointments per time bucket, the bucket size
+	 * follows the length of the period
+	 * 
+	 * @param patientId the patient whose index is counted
+	 * @param from start of the period, null for the patient's first obs
+	 * @param to end of the period, null for now
+	 * @return the timeline, null when the index can not be reached
+	 */
+	public Timeline getTimeline(Integer patientId, Date from, Date to);
+	
 	public ChartSearchHistory getSearchHistory(Integer searchId);
 	
 	public void saveSearchHistory(ChartSearchHistory searchHistory);
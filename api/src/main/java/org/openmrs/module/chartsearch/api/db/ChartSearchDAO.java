@@ -11,7 +11,6 @@ package org.openmrs.module.chartsearch.api.db;
 
 import java.util.List;
 
-import org.apache.solr.client.solrj.SolrServer;
 import org.openmrs.module.chartsearch.api.ChartSearchService;
 import org.openmrs.module.chartsearch.cache.ChartSearchBookmark;
 import org.openmrs.module.chartsearch.cache.ChartSearchCategoryDisplayName;
@@ -24,9 +23,6 @@ import org.openmrs.module.chartsearch.cache.ChartSearchPreference;
  */
 public interface ChartSearchDAO {
 	
-	public void indexAllPatientData(Integer numberOfResults, SolrServer solrServer,
-	                                @SuppressWarnings("rawtypes") Class showProgressToClass);
-	
 	public ChartSearchHistory getSearchHistory(Integer searchId);
 	
 	public void saveSearchHistory(ChartSearchHistory searchHistory);
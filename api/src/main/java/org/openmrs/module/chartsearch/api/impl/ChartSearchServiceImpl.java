@@ -21,7 +21,7 @@ import net.sf.json.JSONObject;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.openmrs.Encounter;
 import org.openmrs.Form;
 import org.openmrs.Location;
@@ -29,14 +29,8 @@ import org.openmrs.Obs;
 import org.openmrs.Provider;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.APIException;
-import org.openmrs.api.ObsService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
-import org.openmrs.module.allergyapi.Allergies;
-import org.openmrs.module.allergyapi.Allergy;
-import org.openmrs.module.allergyapi.api.PatientService;
-import org.openmrs.module.appointmentscheduling.Appointment;
-import org.openmrs.module.appointmentscheduling.api.AppointmentService;
 import org.openmrs.module.chartsearch.GeneratingJson;
 import org.openmrs.module.chartsearch.api.ChartSearchService;
 import org.openmrs.module.chartsearch.api.db.CategoryFilterDAO;
@@ -49,6 +43,9 @@ import org.openmrs.module.chartsearch.cache.ChartSearchHistory;
 import org.openmrs.module.chartsearch.cache.ChartSearchNote;
 import org.openmrs.module.chartsearch.cache.ChartSearchPreference;
 import org.openmrs.module.chartsearch.categories.CategoryFilter;
+import org.openmrs.module.chartsearch.solr.ChartSearchSearcher;
+import org.openmrs.module.chartsearch.solr.SearchSuggestionsCache;
+import org.openmrs.module.chartsearch.solr.Timeline;
 import org.openmrs.module.chartsearch.synonyms.Synonym;
 import org.openmrs.module.chartsearch.synonyms.SynonymGroup;
 import org.openmrs.util.PrivilegeConstants;
@@ -61,6 +58,8 @@ public class ChartSearchServiceImpl extends BaseOpenmrsService implements ChartS
 	
 	protected final Log log = LogFactory.getLog(this.getClass());
 	
+	private static final int MAX_SEARCH_SUGGESTIONS = 100;
+	
 	private SynonymDAO synonymDAO;
 	
 	private SynonymGroupDAO synonymGroupDAO;
@@ -355,51 +354,68 @@ public class ChartSearchServiceImpl extends BaseOpenmrsService implements ChartS
 	}
 	
 	@Override
-	public void indexAllPatientData(Integer numberOfResults, SolrServer solrServer, Class showProgressToClass) {
-		dao.indexAllPatientData(numberOfResults, solrServer, showProgressToClass);
+	public List<String> getAllPossibleSearchSuggestions(Integer patientId) {
+		SearchSuggestionsCache cache = SearchSuggestionsCache.getInstance();
+		List<String> suggestions = cache.get(patientId);
+		if (suggestions == null) {
+			try {
+				suggestions = new ChartSearchSearcher().getSearchSuggestions(patientId, MAX_SEARCH_SUGGESTIONS);
+			}
+			catch (SolrServerException e) {
+				log.error("Error generated while getting search suggestions", e);
+				return new ArrayList<String>();
+			}
+			cache.put(patientId, suggestions);
+		}
+		return suggestions;
 	}
 	
 	@Override
-	public List<String> getAllPossibleSearchSuggestions(Integer patientId) {
-		ObsService obsService = Context.getObsService();
+	public List<String> getTypeAheadSuggestions(Integer patientId, String prefix, int limit) {
 		List<String> suggestions = new ArrayList<String>();
+		if (StringUtils.isBlank(prefix))
+			return suggestions;
 		
-		List<Obs> allPatientObs = obsService.getObservationsByPerson(Context.getPatientService().getPatient(patientId));
-		Allergies allAllergies = Context.getService(PatientService.class).getAllergies(
-		    Context.getPatientService().getPatient(patientId));
-		List<Appointment> appointments = Context.getService(AppointmentService.class).getAllAppointments();
-		
-		for (Obs currentObs : allPatientObs) {
-			if (currentObs != null && currentObs.getConcept() != null && currentObs.getConcept().getName() != null) {
-				String currentConceptName = currentObs.getConcept().getName().getName();
-				if (StringUtils.isNotBlank(currentConceptName)) {
-					suggestions.add(currentConceptName);
-				}
+		String lowerCasePrefix = prefix.trim().toLowerCase();
+		for (CategoryFilter category : getAllCategoryFilters()) {
+			String name = category.getCategoryName();
+			if (suggestions.size() < limit && name != null && name.toLowerCase().startsWith(lowerCasePrefix)) {
+				suggestions.add(name);
 			}
 		}
-		for (Allergy allergy : allAllergies) {
-			if (allergy != null) {
-				String nonCoded = allergy.getAllergen().getNonCodedAllergen();
-				String coded = allergy.getAllergen().getCodedAllergen().getName().getName();
-				if (StringUtils.isNotBlank(nonCoded)) {
-					suggestions.add(nonCoded);
-				} else {
-					suggestions.add(coded);
+		try {
+			for (String name : new ChartSearchSearcher().getTypeAheadSuggestions(patientId, prefix, limit
+			        - suggestions.size())) {
+				if (!containsIgnoreCase(suggestions, name)) {
+					suggestions.add(name);
 				}
 			}
 		}
-		for (Appointment app : appointments) {
-			if (app != null) {
-				String appType = app.getAppointmentType().getDisplayString();
-				if (StringUtils.isNotBlank(appType)) {
-					suggestions.add(appType);
-				}
-			}
+		catch (SolrServerException e) {
+			log.error("Error generated while getting type-ahead suggestions", e);
 		}
-		
 		return suggestions;
 	}
 	
+	@Override
+	public Timeline getTimeline(Integer patientId, Date from, Date to) {
+		try {
+			return new ChartSearchSearcher().getTimeline(patientId, from, to);
+		}
+		catch (SolrServerException e) {
+			log.error("Error generated while getting the timeline", e);
+			return null;
+		}
+	}
+	
+	private static boolean containsIgnoreCase(List<String> names, String name) {
+		for (String existing : names) {
+			if (existing.equalsIgnoreCase(name))
+				return true;
+		}
+		return false;
+	}
+	
 	@Override
 	public ChartSearchHistory getSearchHistory(Integer searchId) {
 		return dao.getSearchHistory(searchId);
@@ -0,0 +1,351 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.solr;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.openmrs.module.chartsearch.server.CheckedUpdateSolrServer;
+import org.openmrs.module.chartsearch.server.EmbeddedSolrProperties;
+import org.openmrs.module.chartsearch.server.ObsDateKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Re-indexes the obs table without specifying a patient. The obs_id range is split into partitions
+ * which are read concurrently by workers, each on its own JDBC connection, and the documents they
+ * map are sent to Solr from a bounded update queue.
+ */
+public class BulkIndexer {
+	
+	private static final Logger log = LoggerFactory.getLogger(BulkIndexer.class);
+	
+	private static final String OBS_RANGE_SQL = "SELECT MIN(obs_id), MAX(obs_id), COUNT(*) FROM obs WHERE voided = 0";
+	
+	private static final String OBS_PAGE_SQL = "SELECT o.uuid AS id, o.obs_id, o.person_id, o.obs_datetime, o.obs_group_id, "
+	        + "cn1.name AS concept_name, cn2.name AS coded, o.value_boolean, o.value_datetime, o.value_numeric, o.value_text, "
+	        + "cc.name AS concept_class_name, cd.name AS concept_datatype_facet, et.name AS encounter_type_facet "
+	        + "FROM obs o "
+	        + "INNER JOIN concept_name cn1 ON cn1.concept_id = o.concept_id AND cn1.locale = 'en' "
+	        + "AND cn1.concept_name_type = 'FULLY_SPECIFIED' AND cn1.voided = 0 "
+	        + "LEFT JOIN concept_name cn2 ON cn2.concept_id = o.value_coded AND cn2.locale = 'en' "
+	        + "AND cn2.concept_name_type = 'FULLY_SPECIFIED' "
+	        + "LEFT JOIN concept c ON c.concept_id = o.concept_id "
+	        + "LEFT JOIN concept_class cc ON cc.concept_class_id = c.class_id "
+	        + "LEFT JOIN concept_datatype cd ON cd.concept_datatype_id = c.datatype_id "
+	        + "LEFT JOIN encounter e ON e.encounter_id = o.encounter_id "
+	        + "LEFT JOIN encounter_type et ON et.encounter_type_id = e.encounter_type "
+	        + "WHERE o.voided = 0 AND o.obs_id > ? AND o.obs_id <= ? ORDER BY o.obs_id LIMIT ?";
+	
+	private static final int PARTITIONS_PER_WORKER = 4;
+	
+	private final SolrServer solrServer;
+	
+	private final EmbeddedSolrProperties dbProperties;
+	
+	private final int batchSize;
+	
+	private final int commitInterval;
+	
+	private final int workersCount;
+	
+	private final long throttleMillis;
+	
+	private final BulkIndexingProgress progress;
+	
+	private final Queue<long[]> partitions = new ConcurrentLinkedQueue<long[]>();
+	
+	private final AtomicInteger remaining = new AtomicInteger();
+	
+	private final BlockingQueue<List<SolrInputDocument>> updates;
+	
+	private volatile boolean aborted;
+	
+	public BulkIndexer(SolrServer solrServer, EmbeddedSolrProperties dbProperties, int batchSize, int commitInterval,
+	                   int workersCount, long throttleMillis, BulkIndexingProgress progress) {
+		this.solrServer = solrServer;
+		this.dbProperties = dbProperties;
+		this.batchSize = batchSize;
+		this.commitInterval = commitInterval;
+		this.workersCount = workersCount;
+		this.throttleMillis = throttleMillis;
+		this.progress = progress;
+		this.updates = new ArrayBlockingQueue<List<SolrInputDocument>>(workersCount * 2);
+	}
+	
+	/**
+	 * Indexes up to maxDocuments obs, soft committing every commitInterval documents and optimizing
+	 * once at the end. Durability is left to the autoCommit of the core. The run must have been
+	 * claimed with {@link BulkIndexingProgress#tryStart()}, it is finished here.
+	 */
+	public void indexAll(int maxDocuments) {
+		ExecutorService executorService = null;
+		boolean completed = false;
+		try {
+			long[] range = getObsIdRange();
+			progress.setTotal(Math.min(range[2], maxDocuments));
+			if (range[2] == 0)
+				return;
+			
+			createPartitions(range[0] - 1, range[1]);
+			remaining.set(maxDocuments);
+			log.info("Bulk indexing up to {} documents on {} workers in batches of {}", new Object[] { maxDocuments,
+			        workersCount, batchSize });
+			
+			ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat("ChartSearchBulkIndexer Worker #%d").build();
+			executorService = Executors.newFixedThreadPool(workersCount, factory);
+			List<Future<Integer>> workers = new ArrayList<Future<Integer>>(workersCount);
+			for (int i = 0; i < workersCount; i++) {
+				workers.add(executorService.submit(new Worker()));
+			}
+			executorService.shutdown();
+			
+			int indexed = sendUpdates(executorService);
+			for (Future<Integer> worker : workers) {
+				worker.get();
+			}
+			
+			if (indexed > 0) {
+				flushUpdates();
+				solrServer.optimize();
+			}
+			completed = true;
+		}
+		catch (SQLException e) {
+			log.error("Error while reading the obs range", e);
+		}
+		catch (SolrServerException e) {
+			log.error("Error while indexing patient data", e);
+		}
+		catch (IOException e) {
+			log.error("Error while indexing patient data", e);
+		}
+		catch (ExecutionException e) {
+			log.error("Bulk indexing worker failed", e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			aborted = true;
+			if (executorService != null) {
+				executorService.shutdownNow();
+			}
+			progress.finish();
+			log.info("Bulk indexing {}: {}", completed ? "finished" : "stopped", progress);
+		}
+	}
+	
+	private long[] getObsIdRange() throws SQLException {
+		Connection connection = getConnection();
+		try {
+			PreparedStatement statement = connection.prepareStatement(OBS_RANGE_SQL);
+			ResultSet rs = statement.executeQuery();
+			rs.next();
+			return new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) };
+		}
+		finally {
+			connection.close();
+		}
+	}
+	
+	/**
+	 * Splits (from, to] into equal partitions, more than there are workers so that a dense range
+	 * does not leave the other workers idle
+	 */
+	private void createPartitions(long from, long to) {
+		int count = workersCount * PARTITIONS_PER_WORKER;
+		long size = Math.max((to - from + count - 1) / count, 1);
+		for (long start = from; start < to; start += size) {
+			partitions.add(new long[] { start, Math.min(start + size, to) });
+		}
+	}
+	
+	/**
+	 * Takes document batches from the update queue until all workers are done
+	 *
+	 * @return the number of documents sent to Solr
+	 */
+	private int sendUpdates(ExecutorService executorService) throws SolrServerException, IOException,
+	                                                         InterruptedException {
+		int indexed = 0;
+		int uncommitted = 0;
+		while (!executorService.isTerminated() || !updates.isEmpty()) {
+			List<SolrInputDocument> batch = updates.poll(1, TimeUnit.SECONDS);
+			if (batch == null)
+				continue;
+			
+			solrServer.add(batch);
+			indexed += batch.size();
+			uncommitted += batch.size();
+			progress.addIndexed(batch.size());
+			
+			if (uncommitted >= commitInterval) {
+				flushUpdates();
+				solrServer.commit(false, false, true);
+				uncommitted = 0;
+				log.info("Bulk indexing checkpoint: {}", progress);
+			}
+		}
+		return indexed;
+	}
+	
+	/**
+	 * Waits until a queuing update client has sent all added batches, its commits without waiting
+	 * for a searcher are queued too and could overtake them on another sending thread
+	 * 
+	 * @throws SolrServerException if sending a batch failed, the run is then stopped
+	 */
+	private void flushUpdates() throws SolrServerException {
+		if (solrServer instanceof CheckedUpdateSolrServer) {
+			((CheckedUpdateSolrServer) solrServer).blockUntilSent();
+		}
+	}
+	
+	/**
+	 * Reserves the size of the next page from the documents left to index
+	 *
+	 * @return 0 once maxDocuments have been read
+	 */
+	private int reservePage() {
+		while (true) {
+			int left = remaining.get();
+			if (left <= 0)
+				return 0;
+			int pageSize = Math.min(batchSize, left);
+			if (remaining.compareAndSet(left, left - pageSize))
+				return pageSize;
+		}
+	}
+	
+	private Connection getConnection() throws SQLException {
+		return DriverManager.getConnection(dbProperties.getDbUrl(), dbProperties.getDbUser(),
+		    dbProperties.getDbPassword());
+	}
+	
+	private static SolrInputDocument toDocument(ResultSet rs) throws SQLException {
+		SolrInputDocument doc = new SolrInputDocument();
+		doc.addField("id", rs.getString("id"));
+		doc.addField("obs_id", rs.getInt("obs_id"));
+		doc.addField("person_id", rs.getInt("person_id"));
+		Timestamp obsDatetime = rs.getTimestamp("obs_datetime");
+		doc.addField("obs_datetime", obsDatetime);
+		doc.addField("obs_group_id", rs.getInt("obs_group_id"));
+		doc.addField("concept_name", rs.getString("concept_name"));
+		doc.addField("coded", rs.getString("coded"));
+		doc.addField("value_boolean", rs.getBoolean("value_boolean"));
+		doc.addField("value_datetime", rs.getDate("value_datetime"));
+		doc.addField("value_numeric", rs.getFloat("value_numeric"));
+		doc.addField("value_text", rs.getString("value_text"));
+		doc.addField("concept_class_name", rs.getString("concept_class_name"));
+		doc.addField("concept_datatype_facet", rs.getString("concept_datatype_facet"));
+		doc.addField("encounter_type_facet", rs.getString("encounter_type_facet"));
+		for (Map.Entry<String, String> key : ObsDateKeys.getKeys(obsDatetime).entrySet()) {
+			doc.addField(key.getKey(), key.getValue());
+		}
+		return doc;
+	}
+	
+	/**
+	 * Reads partitions page by page on its own connection and queues the mapped documents
+	 */
+	private class Worker implements Callable<Integer> {
+		
+		@Override
+		public Integer call() throws Exception {
+			int read = 0;
+			Connection connection = getConnection();
+			try {
+				PreparedStatement statement = connection.prepareStatement(OBS_PAGE_SQL, ResultSet.TYPE_FORWARD_ONLY,
+				    ResultSet.CONCUR_READ_ONLY);
+				statement.setFetchSize(batchSize);
+				long[] partition;
+				while (!aborted && (partition = partitions.poll()) != null) {
+					read += indexPartition(statement, partition[0], partition[1]);
+				}
+			}
+			catch (Exception e) {
+				aborted = true;
+				throw e;
+			}
+			finally {
+				connection.close();
+			}
+			return read;
+		}
+		
+		private int indexPartition(PreparedStatement statement, long from, long to) throws SQLException,
+		                                                                            InterruptedException {
+			int read = 0;
+			long lastObsId = from;
+			while (!aborted) {
+				int pageSize = reservePage();
+				if (pageSize == 0)
+					break;
+				
+				statement.setLong(1, lastObsId);
+				statement.setLong(2, to);
+				statement.setInt(3, pageSize);
+				List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>(pageSize);
+				ResultSet rs = statement.executeQuery();
+				try {
+					while (rs.next()) {
+						batch.add(toDocument(rs));
+						lastObsId = rs.getLong("obs_id");
+					}
+				}
+				finally {
+					rs.close();
+				}
+				
+				if (batch.size() < pageSize) {
+					remaining.addAndGet(pageSize - batch.size());
+				}
+				if (!batch.isEmpty()) {
+					updates.put(batch);
+					read += batch.size();
+				}
+				if (batch.size() < pageSize)
+					break;
+				
+				if (throttleMillis > 0) {
+					Thread.sleep(throttleMillis);
+				}
+			}
+			return read;
+		}
+	}
+	
+}
@@ -0,0 +1,104 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.solr;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of a bulk re-index: indexed documents, throughput and the estimated time left
+ */
+public class BulkIndexingProgress {
+	
+	private final AtomicLong indexedCount = new AtomicLong();
+	
+	private volatile long total;
+	
+	private volatile long startTime;
+	
+	private volatile long endTime;
+	
+	private final AtomicBoolean running = new AtomicBoolean();
+	
+	/**
+	 * Claims the bulk indexing for the caller
+	 * 
+	 * @return false if a bulk indexing is already running
+	 */
+	public boolean tryStart() {
+		if (!running.compareAndSet(false, true))
+			return false;
+		total = 0;
+		indexedCount.set(0);
+		startTime = System.currentTimeMillis();
+		endTime = 0;
+		return true;
+	}
+	
+	public void setTotal(long total) {
+		this.total = total;
+	}
+	
+	public void addIndexed(int count) {
+		indexedCount.addAndGet(count);
+	}
+	
+	public void finish() {
+		endTime = System.currentTimeMillis();
+		running.set(false);
+	}
+	
+	public boolean isRunning() {
+		return running.get();
+	}
+	
+	public boolean isFinished() {
+		return !running.get() && endTime > 0;
+	}
+	
+	public long getTotal() {
+		return total;
+	}
+	
+	public long getIndexedCount() {
+		return indexedCount.get();
+	}
+	
+	public long getElapsedMillis() {
+		if (startTime == 0)
+			return 0;
+		return (running.get() ? System.currentTimeMillis() : endTime) - startTime;
+	}
+	
+	public double getDocsPerSecond() {
+		long elapsed = getElapsedMillis();
+		if (elapsed <= 0)
+			return 0;
+		return getIndexedCount() * 1000.0 / elapsed;
+	}
+	
+	/**
+	 * @return estimated seconds until all documents are indexed, -1 while the rate is still unknown
+	 */
+	public long getEstimatedSecondsLeft() {
+		double docsPerSecond = getDocsPerSecond();
+		if (docsPerSecond <= 0)
+			return -1;
+		long left = Math.max(total - getIndexedCount(), 0);
+		return (long) Math.ceil(left / docsPerSecond);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%d of %d documents indexed in %d ms (%.1f docs/sec)", getIndexedCount(), total,
+		    getElapsedMillis(), getDocsPerSecond());
+	}
+	
+}
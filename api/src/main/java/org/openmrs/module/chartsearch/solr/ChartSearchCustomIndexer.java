@@ -9,14 +9,11 @@
  */
 package org.openmrs.module.chartsearch.solr;
 
-import java.io.IOException;
-import java.sql.Date;
-import java.sql.SQLException;
-
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.solr.client.solrj.SolrServer;
-import org.apache.solr.client.solrj.SolrServerException;
 import org.openmrs.api.APIAuthenticationException;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.chartsearch.ChartSearchMainProperties;
 import org.openmrs.module.chartsearch.api.ChartSearchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,44 +26,10 @@ public class ChartSearchCustomIndexer {
 	
 	private static final Logger log = LoggerFactory.getLogger(ChartSearchCustomIndexer.class);
 	
-	//o.uuid as id
-	private static String id;
-	
-	//obs_id
-	private static Integer obsId;
-	
-	//person_id
-	private static Integer personId;
-	
-	//obs_datetime
-	private static Date obsDatetime;
-	
-	//obs_group_id
-	private static Integer obsGroupId;
-	
-	//cn1.name as concept_name
-	private static String conceptName;
-	
-	//cn2.name as coded
-	private static String coded;
-	
-	//value_boolean
-	private static Boolean valueBoolean;
-	
-	//value_datetime
-	private static Date valueDatetime;
-	
-	//value_numeric
-	private static float valueNumeric;
-	
-	//value_text
-	private static String valueText;
-	
-	//concept_class_name
-	private static String conceptClassName;
-	
 	private static ChartSearchService chartSearchService;
 	
+	private static final BulkIndexingProgress progress = new BulkIndexingProgress();
+	
 	public static ChartSearchService getChartSearchService() {
 		try {
 			chartSearchService = Context.getService(ChartSearchService.class);
@@ -77,122 +40,41 @@ public class ChartSearchCustomIndexer {
 		return chartSearchService;
 	}
 	
-	public static String getId() {
-		return id;
-	}
-	
-	public static Integer getObsId() {
-		return obsId;
-	}
-	
-	public static Integer getPersonId() {
-		return personId;
-	}
-	
-	public static Date getObsDatetime() {
-		return obsDatetime;
-	}
-	
-	public static Integer getObsGroupId() {
-		return obsGroupId;
-	}
-	
-	public static String getConceptName() {
-		return conceptName;
-	}
-	
-	public static String getCoded() {
-		return coded;
-	}
-	
-	public static Boolean isValueBoolean() {
-		return valueBoolean;
-	}
-	
-	public static Date getValueDatetime() {
-		return valueDatetime;
-	}
-	
-	public static Float getValueNumeric() {
-		return valueNumeric;
-	}
-	
-	public static String getValueText() {
-		return valueText;
+	public static BulkIndexingProgress getProgress() {
+		return progress;
 	}
 	
-	public static String getConceptClassName() {
-		return conceptClassName;
-	}
-	
-	public static Boolean getValueBoolean() {
-		return valueBoolean;
-	}
-	
-	public static void setValueBoolean(Boolean valueBoolean) {
-		ChartSearchCustomIndexer.valueBoolean = valueBoolean;
-	}
-	
-	public static void setId(String id) {
-		ChartSearchCustomIndexer.id = id;
-	}
-	
-	public static void setObsId(Integer obsId) {
-		ChartSearchCustomIndexer.obsId = obsId;
-	}
-	
-	public static void setPersonId(Integer personId) {
-		ChartSearchCustomIndexer.personId = personId;
-	}
-	
-	public static void setObsDatetime(Date obsDatetime) {
-		ChartSearchCustomIndexer.obsDatetime = obsDatetime;
-	}
-	
-	public static void setObsGroupId(Integer obsGroupId) {
-		ChartSearchCustomIndexer.obsGroupId = obsGroupId;
-	}
-	
-	public static void setConceptName(String conceptName) {
-		ChartSearchCustomIndexer.conceptName = conceptName;
-	}
-	
-	public static void setCoded(String coded) {
-		ChartSearchCustomIndexer.coded = coded;
-	}
-	
-	public static void setValueDatetime(Date valueDatetime) {
-		ChartSearchCustomIndexer.valueDatetime = valueDatetime;
-	}
-	
-	public static void setValueNumeric(float valueNumeric) {
-		ChartSearchCustomIndexer.valueNumeric = valueNumeric;
-	}
-	
-	public static void setValueText(String valueText) {
-		ChartSearchCustomIndexer.valueText = valueText;
-	}
-	
-	public static void setConceptClassName(String conceptClassName) {
-		ChartSearchCustomIndexer.conceptClassName = conceptClassName;
-	}
-	
-	@SuppressWarnings("rawtypes")
-	public static void indexAllPatientData(Integer numberOfResults, Class showProgressToClass) throws SQLException {
-		SolrServer solrServer = SolrSingleton.getInstance().getServer();
+	/**
+	 * Runs a bulk indexing unless one is already running
+	 */
+	public static void indexAllPatientData(Integer numberOfResults) {
+		SolrServer solrServer = SolrSingleton.getInstance().getUpdateServer();
 		if (numberOfResults == null || !(numberOfResults instanceof Integer)) {
 			numberOfResults = 400;
 		}
-		getChartSearchService().indexAllPatientData(numberOfResults, solrServer, showProgressToClass);
-		try {
-			solrServer.commit();
-		}
-		catch (SolrServerException e) {
-			log.error("Error generated", e);
-		}
-		catch (IOException e) {
-			log.error("Error generated", e);
+		int batchSize = getIntegerGlobalProperty(ChartSearchMainProperties.BULK_INDEXING_BATCH_SIZE,
+		    ChartSearchMainProperties.DEFAULT_BULK_INDEXING_BATCH_SIZE);
+		int commitInterval = getIntegerGlobalProperty(ChartSearchMainProperties.BULK_INDEXING_COMMIT_INTERVAL,
+		    ChartSearchMainProperties.DEFAULT_BULK_INDEXING_COMMIT_INTERVAL);
+		int workersCount = getIntegerGlobalProperty(ChartSearchMainProperties.BULK_INDEXING_WORKERS,
+		    ChartSearchMainProperties.DEFAULT_BULK_INDEXING_WORKERS);
+		String throttle = Context.getAdministrationService().getGlobalProperty(
+		    ChartSearchMainProperties.BULK_INDEXING_THROTTLE);
+		long throttleMillis = Math.max(NumberUtils.toLong(throttle, 0), 0);
+		
+		if (!progress.tryStart()) {
+			log.warn("Bulk indexing is already running");
+			return;
 		}
+		BulkIndexer bulkIndexer = new BulkIndexer(solrServer, SolrUtils.getEmbeddedSolrProperties(), batchSize,
+		        commitInterval, workersCount, throttleMillis, progress);
+		bulkIndexer.indexAll(numberOfResults);
+	}
+	
+	private static int getIntegerGlobalProperty(String property, int defaultValue) {
+		String value = Context.getAdministrationService().getGlobalProperty(property);
+		int result = NumberUtils.toInt(value, defaultValue);
+		return result > 0 ? result : defaultValue;
 	}
 	
 }
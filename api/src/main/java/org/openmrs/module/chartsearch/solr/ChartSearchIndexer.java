@@ -20,7 +20,6 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.util.NamedList;
-import org.openmrs.module.chartsearch.apiIndexing.ChartSearchAPIIndexer;
 import org.openmrs.module.chartsearch.server.ConfigCommands;
 import org.openmrs.module.chartsearch.server.PatientInfo;
 import org.openmrs.module.chartsearch.server.StatisticsInfo;
@@ -38,6 +37,11 @@ public class ChartSearchIndexer {
 	public ChartSearchIndexer() {
 	}
 	
+	/**
+	 * Queues an import of the patient's data, including allergies and appointments, and returns as
+	 * soon as it is queued. Searches of the patient wait for it with
+	 * {@link #awaitPatientImport(Integer, long, boolean)}.
+	 */
 	public void indexPatientData(Integer personId) {
 		SolrServer solrServer = SolrSingleton.getInstance().getServer();
 		ModifiableSolrParams params = new ModifiableSolrParams();
@@ -48,10 +52,9 @@ public class ChartSearchIndexer {
 		params.set("personId", personId);
 		try {
 			if (solrServer != null) {
-				ChartSearchAPIIndexer apiIndexer = new ChartSearchAPIIndexer();
-				
-				solrServer.query(params);
-				apiIndexer.indexBothPatientAllergiesAndAppointments(personId, solrServer);
+				QueryResponse response = solrServer.query(params);
+				Long ticketId = (Long) response.getResponse().get(ConfigCommands.Labels.IMPORT_TICKET);
+				SearchSuggestionsCache.getInstance().importQueued(personId, ticketId);
 			}
 		}
 		catch (SolrServerException ex) {
@@ -59,6 +62,89 @@ public class ChartSearchIndexer {
 		}
 	}
 	
+	/**
+	 * Queues a low priority import of the patient ahead of an appointment, the patient is kept in
+	 * the index until the given time
+	 */
+	public void prewarmPatientData(Integer personId, Date until) {
+		SolrServer solrServer = SolrSingleton.getInstance().getServer();
+		ModifiableSolrParams params = new ModifiableSolrParams();
+		//TODO take path from config
+		params.set("qt", "/csdataimport");
+		params.set("command", ConfigCommands.PREWARM);
+		params.set("personId", personId);
+		params.set(ConfigCommands.PREWARM_UNTIL, String.valueOf(until.getTime()));
+		try {
+			if (solrServer != null) {
+				solrServer.query(params);
+			}
+		}
+		catch (SolrServerException ex) {
+			log.error(String.format("Tried to pre-index patient #%d but failed", personId), ex);
+		}
+	}
+	
+	/**
+	 * Queues a re-import of the data which does not belong to a patient, e.g. forms
+	 */
+	public void indexGlobalData() {
+		SolrServer solrServer = SolrSingleton.getInstance().getServer();
+		ModifiableSolrParams params = new ModifiableSolrParams();
+		//TODO take path from config
+		params.set("qt", "/csdataimport");
+		params.set("command", ConfigCommands.IMPORT_GLOBAL);
+		try {
+			if (solrServer != null) {
+				solrServer.query(params);
+			}
+		}
+		catch (SolrServerException ex) {
+			log.error("Tried to import global data but failed", ex);
+		}
+	}
+	
+	/**
+	 * Waits for the latest queued import of the patient to finish, at most for the given time
+	 * 
+	 * @return false if the import is still pending after the timeout, failed or its state is
+	 *         unknown
+	 */
+	public boolean awaitPatientImport(Integer personId, long timeoutMillis) {
+		return awaitPatientImport(personId, timeoutMillis, false);
+	}
+	
+	/**
+	 * Waits like {@link #awaitPatientImport(Integer, long)}, in the same request the search of the
+	 * patient can be recorded for the usage based index clear strategies
+	 */
+	public boolean awaitPatientImport(Integer personId, long timeoutMillis, boolean recordAccess) {
+		SolrServer solrServer = SolrSingleton.getInstance().getServer();
+		if (solrServer == null || personId == null)
+			return false;
+		
+		ModifiableSolrParams params = new ModifiableSolrParams();
+		//TODO take path from config
+		params.set("qt", "/csdataimport");
+		params.set("command", ConfigCommands.AWAIT_IMPORT);
+		params.set("personId", personId);
+		params.set(ConfigCommands.AWAIT_IMPORT_TIMEOUT, String.valueOf(timeoutMillis));
+		params.set(ConfigCommands.AWAIT_IMPORT_RECORD_ACCESS, recordAccess);
+		
+		try {
+			QueryResponse response = solrServer.query(params);
+			Boolean completed = (Boolean) response.getResponse().get(ConfigCommands.Labels.IMPORT_COMPLETED);
+			if (completed != null && completed) {
+				SearchSuggestionsCache.getInstance().importCompleted(personId);
+				return true;
+			}
+			return false;
+		}
+		catch (SolrServerException ex) {
+			log.error(String.format("Failed to wait for the import of patient #%d", personId), ex);
+			return false;
+		}
+	}
+	
 	public PatientInfo getPatientInfo(Integer patientId) {
 		SolrServer solrServer = SolrSingleton.getInstance().getServer();
 		ModifiableSolrParams params = new ModifiableSolrParams();
@@ -96,7 +182,10 @@ public class ChartSearchIndexer {
 			int pruneCount = (Integer) responseList.get(ConfigCommands.Labels.CLEARED_PATIENTS_COUNT);
 			List<HashMap<String, Object>> daemonStates = (ArrayList<HashMap<String, Object>>) responseList
 			        .get(ConfigCommands.Labels.DAEMON_STATES);
-			StatisticsInfo stats = new StatisticsInfo(clearStrategy, pruneCount, daemonStates);
+			Double hitRatio = (Double) responseList.get(ConfigCommands.Labels.SEARCH_HIT_RATIO);
+			StatisticsInfo stats = new StatisticsInfo(clearStrategy, pruneCount, daemonStates,
+			        hitRatio != null ? hitRatio : 0);
+			stats.setDaemonsCountPinned(Boolean.TRUE.equals(responseList.get(ConfigCommands.Labels.DAEMONS_COUNT_PINNED)));
 			return stats;
 		}
 		catch (SolrServerException ex) {
@@ -146,6 +235,19 @@ public class ChartSearchIndexer {
 	 * do not return string
 	 */
 	public int changeDaemonsCount(int count) {
+		return changeDaemonsCount(String.valueOf(count));
+	}
+	
+	/**
+	 * Undoes {@link #changeDaemonsCount(int)}, the daemons are sized automatically again
+	 * 
+	 * @return the daemons count, -1 if the request failed
+	 */
+	public int resumeDaemonsAutoscaling() {
+		return changeDaemonsCount(ConfigCommands.DAEMONS_COUNT_AUTO);
+	}
+	
+	private int changeDaemonsCount(String count) {
 		SolrServer solrServer = SolrSingleton.getInstance().getServer();
 		ModifiableSolrParams params = new ModifiableSolrParams();
 		//TODO take path from config
@@ -9,11 +9,18 @@
  */
 package org.openmrs.module.chartsearch.solr;
 
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -23,17 +30,24 @@ import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.FacetField.Count;
+import org.apache.solr.client.solrj.response.PivotField;
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.RangeFacet;
+import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.util.DateUtil;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.chartsearch.AllergyItem;
 import org.openmrs.module.chartsearch.AppointmentItem;
 import org.openmrs.module.chartsearch.ChartListItem;
+import org.openmrs.module.chartsearch.ChartSearchMainProperties;
 import org.openmrs.module.chartsearch.ChartSearchNonFacetFiltering;
 import org.openmrs.module.chartsearch.EncounterItem;
 import org.openmrs.module.chartsearch.FormItem;
 import org.openmrs.module.chartsearch.ObsItem;
+import org.openmrs.module.chartsearch.SearchAPI;
 import org.openmrs.module.chartsearch.api.ChartSearchService;
 import org.openmrs.module.chartsearch.categories.CategoryFilter;
 
@@ -46,7 +60,52 @@ public class ChartSearchSearcher {
 	
 	private ChartSearchService chartSearchService;
 	
-	public static List<Count> facetFieldValueNamesAndCounts;
+	/**
+	 * Untokenized fields whose values of a patient are offered as search suggestions
+	 */
+	private static final String[] SUGGESTION_FIELDS = { "concept_name", "allergy_coded_name", "allergy_non_coded_name",
+	        "appointment_type" };
+	
+	/**
+	 * Lowercased copy of the suggestion fields and the concept synonyms, see schema.xml
+	 */
+	private static final String TYPE_AHEAD_FIELD = "suggest_name";
+	
+	/**
+	 * Copy of the names in {@link #TYPE_AHEAD_FIELD} as they were written
+	 */
+	private static final String TYPE_AHEAD_DISPLAY_FIELD = "suggest_display";
+	
+	/**
+	 * Date fields counted per time bucket by the timeline
+	 */
+	private static final String[] TIMELINE_FIELDS = { "obs_datetime", "encounter_datetime", "appointment_start" };
+	
+	private static final int TIMELINE_TOP_CONCEPTS = 3;
+	
+	/**
+	 * Searches asking for more rows, i.e. the whole result list rather than a page, are not
+	 * highlighted
+	 */
+	private static final int MAX_HIGHLIGHTED_ROWS = 100;
+	
+	/**
+	 * Stored fields read into each kind of {@link ChartListItem}. The text catch-all field is left
+	 * out, highlighting reads it on the server. Obs keep the value catch-all, the only stored copy
+	 * of their value.
+	 */
+	private static final String OBS_FIELDS = "id,obs_id,obs_datetime,obs_group_id,concept_name,value";
+	
+	private static final String APPOINTMENT_FIELDS = "id,appointment_id,appointment_provider,appointment_status,"
+	        + "appointment_reason,appointment_type,appointment_start,appointment_end,appointment_typeDesc,"
+	        + "appointment_cancelReason,appointment_location";
+	
+	private static final String FORM_FIELDS = "id,form_id,form_name,encounter_type_name";
+	
+	private static final String ENCOUNTER_FIELDS = "id,encounter_id,encounter_type,encounter_datetime";
+	
+	private static final String ALLERGY_FIELDS = "id,allergy_id,allergy_coded_name,allergy_non_coded_name,"
+	        + "allergy_severity,allergy_type,allergy_coded_reaction,allergy_non_coded_reaction,allergy_comment,allergy_date";
 	
 	public ChartSearchService getChartSearchService() {
 		if (Context.isAuthenticated()) {
@@ -56,15 +115,6 @@ public class ChartSearchSearcher {
 		return chartSearchService;
 	}
 	
-	/**
-	 * stores and returns FacetField.Count values
-	 * 
-	 * @return facetFieldValueNamesAndCounts
-	 */
-	public static List<Count> getFacetFieldValueNamesAndCounts() {
-		return facetFieldValueNamesAndCounts;
-	}
-	
 	public ChartSearchSearcher() {
 		//this.solrServer = SolrSingleton.getInstance().getServer();
 	}
@@ -91,6 +141,73 @@ public class ChartSearchSearcher {
 		List<ChartListItem> list = new ArrayList<ChartListItem>();
 		ChartSearchNonFacetFiltering nonFaceting = new ChartSearchNonFacetFiltering();
 		
+		searchText = setSearchText(query, searchText);
+		query.addFilterQuery(String.format("person_id:%d", patientId));
+		addSelectedFilterQueriesToQuery(query, selectedCategories);
+		query.setStart(start);
+		query.setRows(length);
+		query.setFields(OBS_FIELDS);
+		if (length != null && length <= MAX_HIGHLIGHTED_ROWS && !isLazyHighlighting()) {
+			setHighlighting(query);
+		}
+		
+		query.remove(FacetParams.FACET_FIELD);
+		query.setFacet(true);
+		query.addFacetField(SearchFacets.ALL_DIMENSIONS);
+		// concept classes without matches are still listed, as disabled categories
+		for (String dimension : SearchFacets.ALL_DIMENSIONS) {
+			if (!SearchFacets.CONCEPT_CLASS.equals(dimension)) {
+				query.set("f." + dimension + "." + FacetParams.FACET_MINCOUNT, 1);
+			}
+		}
+		
+		nonFaceting.applyNonFacetingLogicWhileSearching(patientId, searchText, selectedCategories, solrServer, query, list);
+		
+		return list;
+	}
+	
+	/**
+	 * Highlights the search text in the given documents only, for clients showing a page of a
+	 * longer result list
+	 * 
+	 * @param uuids ids of the obs documents to highlight
+	 * @return highlight snippets of each document which has any
+	 */
+	public Map<String, List<String>> getHighlights(Integer patientId, String searchText, List<String> uuids)
+	    throws SolrServerException {
+		Map<String, List<String>> highlights = new HashMap<String, List<String>>();
+		if (uuids == null || uuids.isEmpty())
+			return highlights;
+		
+		SolrServer solrServer = SolrSingleton.getInstance().getServer();
+		SolrQuery query = new SolrQuery();
+		setSearchText(query, searchText);
+		query.addFilterQuery(String.format("person_id:%d", patientId));
+		List<String> ids = new ArrayList<String>(uuids.size());
+		for (String uuid : uuids) {
+			ids.add(ClientUtils.escapeQueryChars(uuid));
+		}
+		query.addFilterQuery(String.format("id:(%s)", StringUtils.join(ids, " OR ")));
+		query.setRows(uuids.size());
+		query.setFields("id");
+		setHighlighting(query);
+		
+		Map<String, Map<String, List<String>>> highlighting = solrServer.query(query).getHighlighting();
+		for (Map.Entry<String, Map<String, List<String>>> entry : highlighting.entrySet()) {
+			List<String> snippets = entry.getValue().get("text");
+			if (snippets != null && !snippets.isEmpty()) {
+				highlights.put(entry.getKey(), snippets);
+			}
+		}
+		return highlights;
+	}
+	
+	/**
+	 * Sets the main query for the search text, applying the chart search syntax
+	 * 
+	 * @return the search text as it was put into the query
+	 */
+	private String setSearchText(SolrQuery query, String searchText) {
 		searchText = StringUtils.isNotBlank(searchText) ? searchText : "*";
 		//check for existence of characters such as ", and : in the search text and submit as it is if so
 		if (searchText.contains("\"")) {
@@ -110,22 +227,24 @@ public class ChartSearchSearcher {
 			}
 			query.setQuery(String.format("text:(%s)", searchText));
 		}
-		
-		query.addFilterQuery(String.format("person_id:%d", patientId));
-		addSelectedFilterQueriesToQuery(query, selectedCategories);
-		query.setStart(start);
-		query.setRows(length);
-		query.setHighlight(true).setHighlightSnippets(1).setHighlightSimplePre("<b>").setHighlightSimplePost("</b>");
+		return searchText;
+	}
+	
+	/**
+	 * Highlights the text field with the FastVectorHighlighter, which reads the term vectors of the
+	 * returned documents instead of analyzing their stored text again
+	 */
+	private static void setHighlighting(SolrQuery query) {
+		query.setHighlight(true).setHighlightSnippets(1);
 		query.setParam("hl.fl", "text");
-		
-		query.remove(FacetParams.FACET_FIELD);
-		query.setFacet(true);
-		//adding facet field for concept_class
-		query.addFacetField("concept_class_name");
-		
-		nonFaceting.applyNonFacetingLogicWhileSearching(patientId, searchText, selectedCategories, solrServer, query, list);
-		
-		return list;
+		query.setParam("hl.useFastVectorHighlighter", true);
+		query.setParam("hl.tag.pre", "<b>");
+		query.setParam("hl.tag.post", "</b>");
+	}
+	
+	private static boolean isLazyHighlighting() {
+		return Boolean.parseBoolean(Context.getAdministrationService().getGlobalProperty(
+		    ChartSearchMainProperties.LAZY_HIGHLIGHTING));
 	}
 	
 	public void searchAppointmentsAndGenerateSolrDoc(Integer patientId, String searchText, SolrServer solrServer,
@@ -133,6 +252,7 @@ public class ChartSearchSearcher {
 		SolrQuery query5 = new SolrQuery(String.format("appointment_text:(%s)", searchText));
 		
 		query5.addFilterQuery(String.format("patient_id:%d", patientId));
+		query5.setFields(APPOINTMENT_FIELDS);
 		QueryResponse response5 = solrServer.query(query5);
 		Iterator<SolrDocument> iter5 = response5.getResults().iterator();
 		
@@ -162,6 +282,7 @@ public class ChartSearchSearcher {
 		// forms
 		System.out.println("Forms:");
 		SolrQuery query2 = new SolrQuery(String.format("form_name:(%s)", searchText));
+		query2.setFields(FORM_FIELDS);
 		QueryResponse response2 = solrServer.query(query2);
 		Iterator<SolrDocument> iter2 = response2.getResults().iterator();
 		
@@ -185,7 +306,8 @@ public class ChartSearchSearcher {
 		System.out.println("Observations:");
 		QueryResponse response = solrServer.query(query);
 		
-		ChartSearchSearcher.facetFieldValueNamesAndCounts = getAndUseFacetFieldsNamesAndCounts(response);
+		// kept with the request, the facets tell about the searched patient's chart
+		SearchAPI.getSearchStatus().setFacets(new SearchFacets(response));
 		
 		Iterator<SolrDocument> iter = response.getResults().iterator();
 		
@@ -213,7 +335,7 @@ public class ChartSearchSearcher {
 			item.setObsGroupId(obsGroupId);
 			item.setValue(value);
 			
-			if (response.getHighlighting().get(uuid) != null) {
+			if (response.getHighlighting() != null && response.getHighlighting().get(uuid) != null) {
 				List<String> highlights = response.getHighlighting().get(uuid).get("text");
 				if (highlights != null && !highlights.isEmpty()) {
 					item.setHighlights(new ArrayList<String>(highlights));
@@ -221,7 +343,7 @@ public class ChartSearchSearcher {
 			}
 			list.add(item);
 			System.out.println(document.get("obs_id") + ", " + document.get("concept_name") + ", "
-			        + document.get("obs_datetime") + ", " + document.get("text"));
+			        + document.get("obs_datetime") + ", " + value);
 		}
 	}
 	
@@ -231,6 +353,7 @@ public class ChartSearchSearcher {
 		System.out.println("Encounters:");
 		SolrQuery query3 = new SolrQuery(String.format("encounter_type:(%s)", searchText));
 		query3.addFilterQuery(String.format("patient_id:%d", patientId));
+		query3.setFields(ENCOUNTER_FIELDS);
 		QueryResponse response3 = solrServer.query(query3);
 		Iterator<SolrDocument> iter3 = response3.getResults().iterator();
 		
@@ -252,6 +375,7 @@ public class ChartSearchSearcher {
 		SolrQuery query4 = new SolrQuery(String.format("allergy_text:(%s)", searchText));
 		
 		query4.addFilterQuery(String.format("patient_id:%d", patientId));
+		query4.setFields(ALLERGY_FIELDS);
 		QueryResponse response4 = solrServer.query(query4);
 		Iterator<SolrDocument> iter4 = response4.getResults().iterator();
 		
@@ -311,18 +435,256 @@ public class ChartSearchSearcher {
 	}
 	
 	/**
-	 * Looks for any added filter fields onto the query and returns its value names and counts
+	 * Returns the concept class value names and counts of a response
 	 * 
 	 * @param response
 	 */
 	public List<Count> getAndUseFacetFieldsNamesAndCounts(QueryResponse response) {
-		List<FacetField> facets = response.getFacetFields();
-		LinkedList<FacetField> conceptNameFacets = new LinkedList<FacetField>();
-		conceptNameFacets.addAll(facets);
+		return new SearchFacets(response).getCounts(SearchFacets.CONCEPT_CLASS);
+	}
+	
+	/**
+	 * Suggests the concept names, allergens and appointment types found in the patient's indexed
+	 * documents, most frequent first, using one facet request
+	 * 
+	 * @param patientId the patient whose documents are enumerated
+	 * @param maxSuggestions maximum number of suggestions to return
+	 */
+	public List<String> getSearchSuggestions(Integer patientId, int maxSuggestions) throws SolrServerException {
+		SolrServer solrServer = SolrSingleton.getInstance().getServer();
+		SolrQuery query = new SolrQuery("*:*");
+		query.addFilterQuery(String.format("person_id:%d OR patient_id:%d", patientId, patientId));
+		query.setRows(0);
+		query.setFacet(true);
+		query.setFacetMinCount(1);
+		query.setFacetLimit(maxSuggestions);
+		query.setFacetSort(FacetParams.FACET_SORT_COUNT);
+		query.addFacetField(SUGGESTION_FIELDS);
+		
+		QueryResponse response = solrServer.query(query);
+		
+		// the same name can be a concept, an allergen and an appointment type
+		Map<String, String> names = new HashMap<String, String>();
+		final Map<String, Long> counts = new HashMap<String, Long>();
+		for (FacetField facet : response.getFacetFields()) {
+			if (facet.getValues() == null)
+				continue;
+			for (Count count : facet.getValues()) {
+				if (StringUtils.isBlank(count.getName()))
+					continue;
+				String key = count.getName().trim().toLowerCase();
+				if (!names.containsKey(key)) {
+					names.put(key, count.getName().trim());
+				}
+				Long total = counts.get(key);
+				counts.put(key, total == null ? count.getCount() : total + count.getCount());
+			}
+		}
+		
+		List<String> keys = new ArrayList<String>(counts.keySet());
+		Collections.sort(keys, new Comparator<String>() {
+			
+			@Override
+			public int compare(String key1, String key2) {
+				int byCount = counts.get(key2).compareTo(counts.get(key1));
+				return byCount != 0 ? byCount : key1.compareTo(key2);
+			}
+		});
+		
+		List<String> suggestions = new ArrayList<String>();
+		for (String key : keys.subList(0, Math.min(maxSuggestions, keys.size()))) {
+			suggestions.add(names.get(key));
+		}
+		return suggestions;
+	}
+	
+	/**
+	 * Completes a typed prefix from the lowercased names of the patient's documents, most frequent
+	 * first, and returns them as they were written. Only the facet terms matching the prefix are
+	 * enumerated and no document is read, so this is cheap enough to run on every keystroke.
+	 * 
+	 * @param patientId the patient whose documents are enumerated
+	 * @param prefix the text typed so far
+	 * @param limit maximum number of completions to return
+	 */
+	public List<String> getTypeAheadSuggestions(Integer patientId, String prefix, int limit)
+	    throws SolrServerException {
+		List<String> suggestions = new ArrayList<String>();
+		if (StringUtils.isBlank(prefix) || limit <= 0)
+			return suggestions;
+		
+		SolrServer solrServer = SolrSingleton.getInstance().getServer();
+		SolrQuery query = new SolrQuery("*:*");
+		query.addFilterQuery(String.format("person_id:%d OR patient_id:%d", patientId, patientId));
+		query.setRows(0);
+		query.setFacet(true);
+		query.setFacetMinCount(1);
+		query.setFacetLimit(limit);
+		query.setFacetSort(FacetParams.FACET_SORT_COUNT);
+		query.setFacetPrefix(TYPE_AHEAD_FIELD, prefix.trim().toLowerCase());
+		query.addFacetField(TYPE_AHEAD_FIELD);
+		
+		FacetField facet = solrServer.query(query).getFacetField(TYPE_AHEAD_FIELD);
+		if (facet == null || facet.getValues() == null || facet.getValues().isEmpty())
+			return suggestions;
+		
+		List<String> keys = new ArrayList<String>();
+		for (Count count : facet.getValues()) {
+			keys.add(count.getName());
+		}
+		Map<String, String> displayNames = getTypeAheadDisplayNames(solrServer, patientId, keys);
+		for (String key : keys) {
+			String displayName = displayNames.get(key);
+			suggestions.add(displayName != null ? displayName : key);
+		}
+		return suggestions;
+	}
+	
+	/**
+	 * Maps the lowercased type-ahead terms back to the names as written, the most frequent spelling
+	 * wins. Only the patient's documents holding one of the terms are faceted.
+	 */
+	private Map<String, String> getTypeAheadDisplayNames(SolrServer solrServer, Integer patientId, List<String> keys)
+	    throws SolrServerException {
+		StringBuilder keysFilter = new StringBuilder();
+		for (String key : keys) {
+			if (keysFilter.length() > 0) {
+				keysFilter.append(" OR ");
+			}
+			keysFilter.append(TYPE_AHEAD_FIELD).append(':').append(ClientUtils.escapeQueryChars(key));
+		}
+		
+		SolrQuery query = new SolrQuery("*:*");
+		query.addFilterQuery(String.format("person_id:%d OR patient_id:%d", patientId, patientId));
+		query.addFilterQuery(keysFilter.toString());
+		query.setRows(0);
+		query.setFacet(true);
+		query.setFacetMinCount(1);
+		query.setFacetLimit(-1);
+		query.setFacetSort(FacetParams.FACET_SORT_COUNT);
+		query.addFacetField(TYPE_AHEAD_DISPLAY_FIELD);
 		
-		//TODO use iteration when adding other facet fields rather than concept class
-		FacetField conceptNameFacet = conceptNameFacets.get(0);
-		return conceptNameFacet.getValues();
+		Map<String, String> displayNames = new HashMap<String, String>();
+		FacetField facet = solrServer.query(query).getFacetField(TYPE_AHEAD_DISPLAY_FIELD);
+		if (facet != null && facet.getValues() != null) {
+			for (Count count : facet.getValues()) {
+				String key = count.getName().toLowerCase();
+				if (keys.contains(key) && !displayNames.containsKey(key)) {
+					displayNames.put(key, count.getName());
+				}
+			}
+		}
+		return displayNames;
+	}
+	
+	/**
+	 * Counts the patient's obs, encounters and appointments per time bucket with range facets,
+	 * together with the most frequent concepts of each bucket. The bucket size follows the length
+	 * of the period, so that a zoomed out timeline gets years and a zoomed in one days.
+	 * 
+	 * @param from start of the period, null for the patient's first obs
+	 * @param to end of the period, null for now
+	 */
+	@SuppressWarnings("rawtypes")
+	public Timeline getTimeline(Integer patientId, Date from, Date to) throws SolrServerException {
+		SolrServer solrServer = SolrSingleton.getInstance().getServer();
+		String patientFilter = String.format("person_id:%d OR patient_id:%d", patientId, patientId);
+		if (to == null) {
+			to = new Date();
+		}
+		if (from == null) {
+			from = getFirstObsDatetime(solrServer, patientFilter, to);
+		}
+		Timeline.Granularity granularity = Timeline.Granularity.forPeriod(from, to);
+		String start = DateUtil.getThreadLocalDateFormat().format(from) + "/" + granularity.getDateMathUnit();
+		String end = DateUtil.getThreadLocalDateFormat().format(to);
+		
+		SolrQuery query = new SolrQuery("*:*");
+		query.addFilterQuery(patientFilter);
+		// restricts the top concepts to the period, the range facets exclude it to count all types
+		query.addFilterQuery(String.format("{!tag=period}obs_datetime:[%s TO %s]", start, end));
+		query.setRows(0);
+		query.setFacet(true);
+		// Solr 4.3 rounds the range buckets in UTC, the obs bucket fields are formatted in UTC as well
+		for (String field : TIMELINE_FIELDS) {
+			query.add(FacetParams.FACET_RANGE, "{!ex=period}" + field);
+		}
+		query.set(FacetParams.FACET_RANGE_START, start);
+		query.set(FacetParams.FACET_RANGE_END, end);
+		query.set(FacetParams.FACET_RANGE_GAP, "+1" + granularity.getDateMathUnit());
+		query.addFacetPivotField(granularity.getKeyField() + "," + SearchFacets.CONCEPT_NAME);
+		query.set("f." + granularity.getKeyField() + "." + FacetParams.FACET_LIMIT, -1);
+		query.set("f." + SearchFacets.CONCEPT_NAME + "." + FacetParams.FACET_LIMIT, TIMELINE_TOP_CONCEPTS);
+		// empty buckets are kept, only the pivot leaves them out
+		query.set("f." + granularity.getKeyField() + "." + FacetParams.FACET_MINCOUNT, 1);
+		query.set("f." + SearchFacets.CONCEPT_NAME + "." + FacetParams.FACET_MINCOUNT, 1);
+		
+		QueryResponse response = solrServer.query(query);
+		Timeline timeline = new Timeline(granularity, from, to);
+		Map<String, Timeline.Bucket> buckets = new TreeMap<String, Timeline.Bucket>();
+		List<RangeFacet> ranges = response.getFacetRanges() != null ? response.getFacetRanges()
+		        : new ArrayList<RangeFacet>();
+		for (RangeFacet<?, ?> range : ranges) {
+			for (RangeFacet.Count count : range.getCounts()) {
+				Date bucketStart;
+				try {
+					bucketStart = DateUtil.parseDate(count.getValue());
+				}
+				catch (ParseException e) {
+					log.warn("Unexpected range facet value " + count.getValue());
+					continue;
+				}
+				String key = granularity.formatKey(bucketStart);
+				Timeline.Bucket bucket = buckets.get(key);
+				if (bucket == null) {
+					bucket = new Timeline.Bucket(bucketStart);
+					buckets.put(key, bucket);
+				}
+				if ("obs_datetime".equals(range.getName())) {
+					bucket.setObsCount(count.getCount());
+				} else if ("encounter_datetime".equals(range.getName())) {
+					bucket.setEncounterCount(count.getCount());
+				} else {
+					bucket.setAppointmentCount(count.getCount());
+				}
+			}
+		}
+		
+		List<PivotField> keys = response.getFacetPivot() == null ? null : response.getFacetPivot().get(
+		    granularity.getKeyField() + "," + SearchFacets.CONCEPT_NAME);
+		if (keys != null) {
+			for (PivotField key : keys) {
+				Timeline.Bucket bucket = buckets.get(String.valueOf(key.getValue()));
+				if (bucket == null || key.getPivot() == null)
+					continue;
+				FacetField concepts = new FacetField(SearchFacets.CONCEPT_NAME);
+				List<Count> topConcepts = new ArrayList<Count>();
+				for (PivotField concept : key.getPivot()) {
+					topConcepts.add(new Count(concepts, String.valueOf(concept.getValue()), concept.getCount()));
+				}
+				bucket.setTopConcepts(topConcepts);
+			}
+		}
+		timeline.getBuckets().addAll(buckets.values());
+		return timeline;
+	}
+	
+	private static Date getFirstObsDatetime(SolrServer solrServer, String patientFilter, Date to)
+	    throws SolrServerException {
+		SolrQuery query = new SolrQuery("obs_datetime:[* TO *]");
+		query.addFilterQuery(patientFilter);
+		query.setFields("obs_datetime");
+		query.setSortField("obs_datetime", SolrQuery.ORDER.asc);
+		query.setRows(1);
+		
+		SolrDocumentList results = solrServer.query(query).getResults();
+		if (results.isEmpty()) {
+			Calendar yearBefore = Calendar.getInstance();
+			yearBefore.setTime(to);
+			yearBefore.add(Calendar.YEAR, -1);
+			return yearBefore.getTime();
+		}
+		return (Date) results.get(0).getFieldValue("obs_datetime");
 	}
 	
 }
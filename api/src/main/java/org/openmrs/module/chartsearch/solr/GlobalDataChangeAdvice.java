@@ -0,0 +1,54 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.solr;
+
+import java.lang.reflect.Method;
+
+import org.springframework.aop.AfterReturningAdvice;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Re-imports the forms once a form or an encounter type has been changed, so that patient imports
+ * never need to touch them
+ */
+public class GlobalDataChangeAdvice implements AfterReturningAdvice {
+	
+	private static final String[] CHANGING_METHODS = { "saveForm", "duplicateForm", "retireForm", "unretireForm",
+	        "purgeForm", "saveEncounterType", "retireEncounterType", "unretireEncounterType", "purgeEncounterType" };
+	
+	@Override
+	public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
+		if (!isChangingMethod(method.getName()))
+			return;
+		
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// the import reads on its own connection, so it has to wait for the change to be committed
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCommit() {
+					new ChartSearchIndexer().indexGlobalData();
+				}
+			});
+		} else {
+			new ChartSearchIndexer().indexGlobalData();
+		}
+	}
+	
+	private static boolean isChangingMethod(String methodName) {
+		for (String changingMethod : CHANGING_METHODS) {
+			if (changingMethod.equals(methodName))
+				return true;
+		}
+		return false;
+	}
+	
+}
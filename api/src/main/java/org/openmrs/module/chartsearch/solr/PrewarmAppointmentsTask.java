@@ -0,0 +1,76 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.solr;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.appointmentscheduling.Appointment;
+import org.openmrs.module.appointmentscheduling.Appointment.AppointmentStatus;
+import org.openmrs.module.appointmentscheduling.api.AppointmentService;
+import org.openmrs.module.chartsearch.ChartSearchMainProperties;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * Indexes the patients of the appointments scheduled within the pre-indexing window, so that their
+ * first chart open does not wait for an import. Registered to run daily at off-peak time.
+ */
+public class PrewarmAppointmentsTask extends AbstractTask {
+	
+	private static final Log log = LogFactory.getLog(PrewarmAppointmentsTask.class);
+	
+	@Override
+	public void execute() {
+		Context.openSession();
+		try {
+			if (!Context.isAuthenticated()) {
+				authenticate();
+			}
+			prewarm();
+		}
+		finally {
+			Context.closeSession();
+		}
+	}
+	
+	private void prewarm() {
+		String window = Context.getAdministrationService().getGlobalProperty(ChartSearchMainProperties.PREWARM_WINDOW);
+		long windowMillis = NumberUtils.toInt(window, ChartSearchMainProperties.DEFAULT_PREWARM_WINDOW) * 3600000L;
+		Date from = new Date();
+		Date to = new Date(from.getTime() + windowMillis);
+		
+		List<Appointment> appointments = Context.getService(AppointmentService.class).getAppointmentsByConstraints(from,
+		    to, null, null, null, AppointmentStatus.SCHEDULED);
+		
+		// each patient once, pinned until the end of the last appointment
+		Map<Integer, Date> patients = new HashMap<Integer, Date>();
+		for (Appointment appointment : appointments) {
+			Integer patientId = appointment.getPatient().getPatientId();
+			Date end = appointment.getTimeSlot().getEndDate();
+			Date previous = patients.get(patientId);
+			if (previous == null || previous.before(end)) {
+				patients.put(patientId, end);
+			}
+		}
+		
+		ChartSearchIndexer indexer = Context.getRegisteredComponents(ChartSearchIndexer.class).get(0);
+		for (Map.Entry<Integer, Date> patient : patients.entrySet()) {
+			indexer.prewarmPatientData(patient.getKey(), patient.getValue());
+		}
+		log.info("Queued pre-indexing of " + patients.size() + " patients with appointments until " + to);
+	}
+	
+}
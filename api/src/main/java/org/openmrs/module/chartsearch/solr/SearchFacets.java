@@ -0,0 +1,83 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.solr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.solr.client.solrj.response.FacetField;
+import org.apache.solr.client.solrj.response.FacetField.Count;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.openmrs.module.chartsearch.server.ObsDateKeys;
+
+/**
+ * Value counts of every facet dimension returned by one search, in the order they were requested.
+ * The dimensions are the doc values facet fields of schema.xml.
+ */
+public class SearchFacets {
+	
+	public static final String CONCEPT_CLASS = "concept_class_facet";
+	
+	public static final String CONCEPT_NAME = "concept_name_facet";
+	
+	public static final String CONCEPT_DATATYPE = "concept_datatype_facet";
+	
+	public static final String ENCOUNTER_TYPE = "encounter_type_facet";
+	
+	public static final String OBS_YEAR = ObsDateKeys.YEAR_FIELD;
+	
+	public static final String OBS_MONTH = ObsDateKeys.MONTH_FIELD;
+	
+	public static final String[] ALL_DIMENSIONS = { CONCEPT_CLASS, CONCEPT_NAME, CONCEPT_DATATYPE, ENCOUNTER_TYPE,
+	        OBS_YEAR, OBS_MONTH };
+	
+	private final Map<String, List<Count>> counts = new LinkedHashMap<String, List<Count>>();
+	
+	public SearchFacets() {
+	}
+	
+	/**
+	 * Reads the facet fields of a response, the empty default value of documents without the field
+	 * is left out
+	 */
+	public SearchFacets(QueryResponse response) {
+		if (response.getFacetFields() == null)
+			return;
+		for (FacetField field : response.getFacetFields()) {
+			List<Count> values = new ArrayList<Count>();
+			if (field.getValues() != null) {
+				for (Count count : field.getValues()) {
+					if (StringUtils.isNotEmpty(count.getName())) {
+						values.add(count);
+					}
+				}
+			}
+			counts.put(field.getName(), values);
+		}
+	}
+	
+	public Set<String> getDimensions() {
+		return Collections.unmodifiableSet(counts.keySet());
+	}
+	
+	/**
+	 * @return the value counts of the dimension, most frequent first, empty if it was not requested
+	 */
+	public List<Count> getCounts(String dimension) {
+		List<Count> values = counts.get(dimension);
+		return values != null ? values : Collections.<Count> emptyList();
+	}
+	
+}
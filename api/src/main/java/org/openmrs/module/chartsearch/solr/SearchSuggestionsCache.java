@@ -0,0 +1,77 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.solr;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the search suggestions of the most recently searched patients, an entry is dropped when
+ * the patient's re-import completes and nothing is kept while it is pending
+ */
+public class SearchSuggestionsCache {
+	
+	private static final int MAX_PATIENTS = 100;
+	
+	private static final SearchSuggestionsCache INSTANCE = new SearchSuggestionsCache();
+	
+	private final Map<Integer, List<String>> suggestions = new LinkedHashMap<Integer, List<String>>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, List<String>> eldest) {
+			return size() > MAX_PATIENTS;
+		}
+	};
+	
+	private final Map<Integer, Long> pendingImports = new HashMap<Integer, Long>();
+	
+	private SearchSuggestionsCache() {
+	}
+	
+	public static SearchSuggestionsCache getInstance() {
+		return INSTANCE;
+	}
+	
+	public synchronized List<String> get(Integer patientId) {
+		return suggestions.get(patientId);
+	}
+	
+	/**
+	 * Keeps the suggestions unless an import of the patient is pending, they could be read before
+	 * the import and would stay after it
+	 */
+	public synchronized void put(Integer patientId, List<String> patientSuggestions) {
+		if (!pendingImports.containsKey(patientId)) {
+			suggestions.put(patientId, patientSuggestions);
+		}
+	}
+	
+	public synchronized void invalidate(Integer patientId) {
+		suggestions.remove(patientId);
+	}
+	
+	public synchronized void importQueued(Integer patientId, Long ticketId) {
+		pendingImports.put(patientId, ticketId);
+	}
+	
+	/**
+	 * Drops the patient's suggestions once the pending import is known to have completed
+	 */
+	public synchronized void importCompleted(Integer patientId) {
+		if (pendingImports.remove(patientId) != null) {
+			suggestions.remove(patientId);
+		}
+	}
+	
+}
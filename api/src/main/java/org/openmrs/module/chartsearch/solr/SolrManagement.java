@@ -12,7 +12,10 @@ package org.openmrs.module.chartsearch.solr;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.solr.client.solrj.SolrServer;
-import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.client.solrj.impl.ConcurrentUpdateSolrServer;
+import org.apache.solr.client.solrj.impl.HttpSolrServer;
+import org.openmrs.module.chartsearch.server.ShardedSolrServer;
+import org.openmrs.module.chartsearch.server.WarmingSolrServer;
 
 /**
  * Customized Solr administration at a programming level. <br />
@@ -29,7 +32,16 @@ public class SolrManagement {
 			log.warn("SolrServer is null");
 			return;
 		}
-		if (solrServer instanceof EmbeddedSolrServer)
+		SolrServer updateServer = SolrSingleton.getInstance().getUpdateServer();
+		if (updateServer instanceof ConcurrentUpdateSolrServer) {
+			// sends the queued updates and stops the sending threads
+			((ConcurrentUpdateSolrServer) updateServer).blockUntilFinished();
+			updateServer.shutdown();
+		} else if (updateServer instanceof ShardedSolrServer) {
+			updateServer.shutdown();
+		}
+		if (solrServer instanceof WarmingSolrServer || solrServer instanceof HttpSolrServer
+		        || solrServer instanceof ShardedSolrServer)
 			solrServer.shutdown();
 	}
 	
@@ -9,11 +9,17 @@
  */
 package org.openmrs.module.chartsearch.solr;
 
+import java.util.List;
+
 import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.impl.HttpSolrServer;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.chartsearch.ChartSearchMainProperties;
 import org.openmrs.module.chartsearch.server.EmbeddedSolrServerCreator;
+import org.openmrs.module.chartsearch.server.HttpSolrProperties;
 import org.openmrs.module.chartsearch.server.HttpSolrServerCreator;
+import org.openmrs.module.chartsearch.server.ShardedSolrServer;
+import org.openmrs.module.chartsearch.server.ShardedSolrServerCreator;
 
 /**
  * An initializing class for the Solr server instance
@@ -21,14 +27,40 @@ import org.openmrs.module.chartsearch.server.HttpSolrServerCreator;
 public class SolrServerFactory {
 	
 	public static SolrServer getSolrServer() {
-		Boolean useDedicatedSolrServer = Boolean.parseBoolean(Context.getAdministrationService().getGlobalProperty(
-		    ChartSearchMainProperties.USE_DEDICATED_SOLR_SERVER));
-		if (useDedicatedSolrServer) {
-			String dedicatedSolrUrl = Context.getAdministrationService().getGlobalProperty(
-			    ChartSearchMainProperties.DEDICATED_SOLR_SERVER_URL);
-			return new HttpSolrServerCreator(dedicatedSolrUrl).createSolrServer();
+		if (useDedicatedSolrServer()) {
+			return getHttpSolrServerCreator().createSolrServer();
 		} else {
 			return new EmbeddedSolrServerCreator(SolrUtils.getEmbeddedSolrProperties()).createSolrServer();
 		}
 	}
+	
+	/**
+	 * @param solrServer the query server returned by {@link #getSolrServer()}
+	 * @return a separate queuing update client for dedicated servers, the query server itself for
+	 *         the embedded one
+	 */
+	public static SolrServer getSolrUpdateServer(SolrServer solrServer) {
+		if (solrServer instanceof HttpSolrServer || solrServer instanceof ShardedSolrServer) {
+			return getHttpSolrServerCreator().createUpdateServer();
+		}
+		return solrServer;
+	}
+	
+	/**
+	 * @return a creator sharding the index by patient when several shard URLs are set, otherwise one
+	 *         for the single dedicated server
+	 */
+	private static HttpSolrServerCreator getHttpSolrServerCreator() {
+		HttpSolrProperties properties = SolrUtils.getHttpSolrProperties();
+		List<String> shardUrls = SolrUtils.getShardUrls();
+		if (!shardUrls.isEmpty()) {
+			return new ShardedSolrServerCreator(properties, shardUrls);
+		}
+		return new HttpSolrServerCreator(properties);
+	}
+	
+	private static boolean useDedicatedSolrServer() {
+		return Boolean.parseBoolean(Context.getAdministrationService().getGlobalProperty(
+		    ChartSearchMainProperties.USE_DEDICATED_SOLR_SERVER));
+	}
 }
@@ -9,47 +9,119 @@
  */
 package org.openmrs.module.chartsearch.solr;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
 import org.apache.solr.client.solrj.SolrServer;
+import org.openmrs.module.chartsearch.server.WarmingSolrServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Solr solr instance maintained through the running instance as a single object
+ * Solr solr instance maintained through the running instance as a single object. The server is
+ * created once by whichever caller comes first, normally the module activator, all other callers
+ * wait for that same creation.
  */
 public class SolrSingleton {
 	
 	private static final Logger log = LoggerFactory.getLogger(SolrSingleton.class);
 	
-	private SolrServer solrServer;
+	private static final SolrSingleton INSTANCE = new SolrSingleton();
 	
-	private SolrSingleton() {
+	private final FutureTask<SolrServer> solrServer = new FutureTask<SolrServer>(new Callable<SolrServer>() {
 		
+		@Override
+		public SolrServer call() throws Exception {
+			log.info("Solr server first init !");
+			long start = System.currentTimeMillis();
+			SolrServer server = SolrServerFactory.getSolrServer();
+			updateServer = SolrServerFactory.getSolrUpdateServer(server);
+			initTime = System.currentTimeMillis() - start;
+			return server;
+		}
+	});
+	
+	private volatile SolrServer updateServer;
+	
+	private volatile long initTime;
+	
+	private SolrSingleton() {
+	
 	}
 	
-	private static class SolrEngineHolder {
-		
-		private static SolrSingleton INSTANCE = null;
+	public static SolrSingleton getInstance() {
+		INSTANCE.init();
+		return INSTANCE;
 	}
 	
+	/**
+	 * Creates the server unless another thread has already created it or is creating it
+	 */
 	private void init() {
-		log.info("Solr server first init !");
-		solrServer = SolrServerFactory.getSolrServer();
+		solrServer.run();
 	}
 	
-	public static SolrSingleton getInstance() {
-		if (SolrEngineHolder.INSTANCE == null) {
-			SolrEngineHolder.INSTANCE = new SolrSingleton();
-			SolrEngineHolder.INSTANCE.init();
+	/**
+	 * Gets an instance of the solr server, waits while another thread is creating it
+	 * 
+	 * @return SolrServer, null if it could not be created
+	 */
+	public SolrServer getServer() {
+		try {
+			return solrServer.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException e) {
+			log.error("Failed to create Solr server", e.getCause());
+			return null;
 		}
-		return SolrEngineHolder.INSTANCE;
 	}
 	
 	/**
-	 * Gets an instance of the solr server
+	 * Gets the client to send index updates through, waits while another thread is creating it
 	 * 
-	 * @return SolrServer
+	 * @return a separate update client for a dedicated server, the server itself when embedded,
+	 *         null if it could not be created
 	 */
-	public SolrServer getServer() {
-		return solrServer;
+	public SolrServer getUpdateServer() {
+		return getServer() == null ? null : updateServer;
+	}
+	
+	/**
+	 * @return true if the embedded server's core failed to load, the server will not become ready
+	 */
+	public boolean isFailed() {
+		if (!solrServer.isDone())
+			return false;
+		SolrServer server = getServer();
+		return server instanceof WarmingSolrServer && ((WarmingSolrServer) server).isFailed();
+	}
+	
+	/**
+	 * @return false while the server is being created or the embedded server is still loading its
+	 *         core, and if loading it failed
+	 */
+	public boolean isReady() {
+		if (!solrServer.isDone())
+			return false;
+		SolrServer server = getServer();
+		return server != null && (!(server instanceof WarmingSolrServer) || ((WarmingSolrServer) server).isReady());
+	}
+	
+	/**
+	 * @return milliseconds from the start of the creation until the server was ready, 0 while it
+	 *         is not ready
+	 */
+	public long getInitTime() {
+		if (!isReady())
+			return 0;
+		SolrServer server = getServer();
+		if (server instanceof WarmingSolrServer)
+			return initTime + ((WarmingSolrServer) server).getWarmUpTime();
+		return initTime;
 	}
 }
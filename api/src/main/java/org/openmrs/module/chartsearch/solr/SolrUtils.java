@@ -10,10 +10,16 @@
 package org.openmrs.module.chartsearch.solr;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.chartsearch.ChartSearchMainProperties;
 import org.openmrs.module.chartsearch.server.EmbeddedSolrProperties;
+import org.openmrs.module.chartsearch.server.HttpSolrProperties;
 import org.openmrs.util.OpenmrsUtil;
 
 /**
@@ -27,8 +33,49 @@ public class SolrUtils {
 		String dbUser = properties.getProperty("connection.username");
 		String dbPassword = properties.getProperty("connection.password");
 		String solrHome = new File(OpenmrsUtil.getApplicationDataDirectory(), "chartsearch").getAbsolutePath();
+		String softCommitInterval = Context.getAdministrationService().getGlobalProperty(
+		    ChartSearchMainProperties.SOFT_COMMIT_INTERVAL);
+		String autoCommitMaxTime = Context.getAdministrationService().getGlobalProperty(
+		    ChartSearchMainProperties.AUTO_COMMIT_MAX_TIME);
 		
-		return new EmbeddedSolrProperties(solrHome, dbUrl, dbUser, dbPassword);
+		return new EmbeddedSolrProperties(solrHome, dbUrl, dbUser, dbPassword, softCommitInterval, autoCommitMaxTime);
+	}
+	
+	public static HttpSolrProperties getHttpSolrProperties() {
+		String solrUrl = Context.getAdministrationService().getGlobalProperty(
+		    ChartSearchMainProperties.DEDICATED_SOLR_SERVER_URL);
+		int maxConnections = getPositiveIntegerGlobalProperty(ChartSearchMainProperties.HTTP_SOLR_MAX_CONNECTIONS,
+		    HttpSolrProperties.DEFAULT_MAX_CONNECTIONS);
+		int maxConnectionsPerHost = getPositiveIntegerGlobalProperty(
+		    ChartSearchMainProperties.HTTP_SOLR_MAX_CONNECTIONS_PER_HOST, HttpSolrProperties.DEFAULT_MAX_CONNECTIONS_PER_HOST);
+		int connectionTimeout = getPositiveIntegerGlobalProperty(ChartSearchMainProperties.HTTP_SOLR_CONNECTION_TIMEOUT,
+		    HttpSolrProperties.DEFAULT_CONNECTION_TIMEOUT);
+		int socketTimeout = getPositiveIntegerGlobalProperty(ChartSearchMainProperties.HTTP_SOLR_SOCKET_TIMEOUT,
+		    HttpSolrProperties.DEFAULT_SOCKET_TIMEOUT);
+		int updateQueueSize = getPositiveIntegerGlobalProperty(ChartSearchMainProperties.HTTP_SOLR_UPDATE_QUEUE_SIZE,
+		    HttpSolrProperties.DEFAULT_UPDATE_QUEUE_SIZE);
+		int updateThreads = getPositiveIntegerGlobalProperty(ChartSearchMainProperties.HTTP_SOLR_UPDATE_THREADS,
+		    HttpSolrProperties.DEFAULT_UPDATE_THREADS);
+		
+		return new HttpSolrProperties(solrUrl, maxConnections, maxConnectionsPerHost, connectionTimeout, socketTimeout,
+		        updateQueueSize, updateThreads);
+	}
+	
+	/**
+	 * @return the URLs of the shards the index is spread over, empty unless at least two are set
+	 */
+	public static List<String> getShardUrls() {
+		String value = Context.getAdministrationService().getGlobalProperty(ChartSearchMainProperties.HTTP_SOLR_SHARD_URLS);
+		List<String> shardUrls = new ArrayList<String>();
+		for (String url : StringUtils.split(StringUtils.defaultString(value), ", \n")) {
+			shardUrls.add(url);
+		}
+		return shardUrls.size() > 1 ? shardUrls : new ArrayList<String>();
+	}
+	
+	private static int getPositiveIntegerGlobalProperty(String property, int defaultValue) {
+		int value = NumberUtils.toInt(Context.getAdministrationService().getGlobalProperty(property), defaultValue);
+		return value > 0 ? value : defaultValue;
 	}
 	
 }
@@ -0,0 +1,172 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.solr;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.solr.client.solrj.response.FacetField.Count;
+import org.openmrs.module.chartsearch.server.ObsDateKeys;
+
+/**
+ * Counts of a patient's obs, encounters and appointments per time bucket, with the most frequent
+ * concepts of each bucket
+ */
+public class Timeline {
+	
+	/**
+	 * Bucket size, chosen as the finest one which keeps the number of buckets of the shown period
+	 * at most MAX_BUCKETS
+	 */
+	public enum Granularity {
+		DAY("DAY", ObsDateKeys.DAY_PATTERN, ObsDateKeys.DAY_FIELD, 24L * 60 * 60 * 1000),
+		MONTH("MONTH", ObsDateKeys.MONTH_PATTERN, ObsDateKeys.MONTH_FIELD, 31L * 24 * 60 * 60 * 1000),
+		YEAR("YEAR", ObsDateKeys.YEAR_PATTERN, ObsDateKeys.YEAR_FIELD, 366L * 24 * 60 * 60 * 1000);
+		
+		public static final int MAX_BUCKETS = 120;
+		
+		private final String dateMathUnit;
+		
+		private final String keyPattern;
+		
+		private final String keyField;
+		
+		private final long maxMillis;
+		
+		private Granularity(String dateMathUnit, String keyPattern, String keyField, long maxMillis) {
+			this.dateMathUnit = dateMathUnit;
+			this.keyPattern = keyPattern;
+			this.keyField = keyField;
+			this.maxMillis = maxMillis;
+		}
+		
+		public static Granularity forPeriod(Date from, Date to) {
+			long span = to.getTime() - from.getTime();
+			for (Granularity granularity : values()) {
+				if (span <= granularity.maxMillis * MAX_BUCKETS)
+					return granularity;
+			}
+			return YEAR;
+		}
+		
+		/**
+		 * @return the Solr date math unit, e.g. MONTH for +1MONTH gaps rounded with /MONTH
+		 */
+		public String getDateMathUnit() {
+			return dateMathUnit;
+		}
+		
+		/**
+		 * @return the obs field holding the bucket of the obs_datetime at this granularity
+		 */
+		public String getKeyField() {
+			return keyField;
+		}
+		
+		/**
+		 * @return the key field value of a bucket starting at the given time, in UTC like the
+		 *         indexed keys
+		 */
+		public String formatKey(Date bucketStart) {
+			return ObsDateKeys.format(bucketStart, keyPattern);
+		}
+	}
+	
+	private final Granularity granularity;
+	
+	private final Date from;
+	
+	private final Date to;
+	
+	private final List<Bucket> buckets = new ArrayList<Bucket>();
+	
+	public Timeline(Granularity granularity, Date from, Date to) {
+		this.granularity = granularity;
+		this.from = from;
+		this.to = to;
+	}
+	
+	public Granularity getGranularity() {
+		return granularity;
+	}
+	
+	public Date getFrom() {
+		return from;
+	}
+	
+	public Date getTo() {
+		return to;
+	}
+	
+	/**
+	 * @return the buckets in time order, empty buckets included
+	 */
+	public List<Bucket> getBuckets() {
+		return buckets;
+	}
+	
+	public static class Bucket {
+		
+		private final Date start;
+		
+		private int obsCount;
+		
+		private int encounterCount;
+		
+		private int appointmentCount;
+		
+		private List<Count> topConcepts = new ArrayList<Count>();
+		
+		public Bucket(Date start) {
+			this.start = start;
+		}
+		
+		public Date getStart() {
+			return start;
+		}
+		
+		public int getObsCount() {
+			return obsCount;
+		}
+		
+		public void setObsCount(int obsCount) {
+			this.obsCount = obsCount;
+		}
+		
+		public int getEncounterCount() {
+			return encounterCount;
+		}
+		
+		public void setEncounterCount(int encounterCount) {
+			this.encounterCount = encounterCount;
+		}
+		
+		public int getAppointmentCount() {
+			return appointmentCount;
+		}
+		
+		public void setAppointmentCount(int appointmentCount) {
+			this.appointmentCount = appointmentCount;
+		}
+		
+		/**
+		 * @return the concepts with the most obs in the bucket, most frequent first
+		 */
+		public List<Count> getTopConcepts() {
+			return topConcepts;
+		}
+		
+		public void setTopConcepts(List<Count> topConcepts) {
+			this.topConcepts = topConcepts;
+		}
+	}
+	
+}
@@ -0,0 +1,222 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.solr;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openmrs.module.chartsearch.server.EmbeddedSolrProperties;
+import org.openmrs.module.chartsearch.server.EmbeddedSolrServerCreator;
+import org.openmrs.module.chartsearch.server.WarmingSolrServer;
+
+/**
+ * Compares the docs/sec of the former re-index, which committed and optimized the index after
+ * every obs, with the {@link BulkIndexer} on one and on several workers. The obs tables are kept in
+ * an in-memory H2 database and the documents go to an embedded core, so it runs offline. It is
+ * not part of the build, run it with: mvn test -pl api -Dtest=BulkIndexingBenchmark
+ */
+public class BulkIndexingBenchmark {
+	
+	private static final String DB_URL = "jdbc:h2:mem:bulkindexing;DB_CLOSE_DELAY=-1";
+	
+	private static final int OBS_COUNT = 20000;
+	
+	/**
+	 * The former re-index is too slow to run over all obs
+	 */
+	private static final int ROW_BY_ROW_OBS_COUNT = 500;
+	
+	private static final int BATCH_SIZE = 1000;
+	
+	private static final int COMMIT_INTERVAL = 50000;
+	
+	/**
+	 * Query of the former re-index, without the schema name
+	 */
+	private static final String ROW_BY_ROW_SQL = "SELECT o.uuid AS id, obs_id, person_id, obs_datetime, obs_group_id, "
+	        + "cn1.name AS concept_name, cn2.name AS coded, value_boolean, value_datetime, value_numeric, value_text, "
+	        + "cc.concept_class_name FROM obs o "
+	        + "INNER JOIN (SELECT * FROM concept_name c WHERE c.locale = 'en' AND concept_name_type = 'FULLY_SPECIFIED') AS cn1 "
+	        + "ON cn1.concept_id = o.concept_id "
+	        + "LEFT JOIN (SELECT * FROM concept_name c WHERE c.locale = 'en' AND concept_name_type = 'FULLY_SPECIFIED') AS cn2 "
+	        + "ON cn2.concept_id = o.value_coded "
+	        + "LEFT JOIN (SELECT DISTINCT o.concept_id, class.name AS concept_class_name FROM concept_class class "
+	        + "JOIN concept c ON c.class_id = class.concept_class_id JOIN obs o ON o.concept_id = c.concept_id) AS cc "
+	        + "ON cc.concept_id = o.concept_id WHERE o.voided = 0 AND cn1.voided = 0 LIMIT ?";
+	
+	private static File solrHome;
+	
+	private static Connection connection;
+	
+	private static SolrServer solrServer;
+	
+	private static EmbeddedSolrProperties properties;
+	
+	@BeforeClass
+	public static void setUp() throws Exception {
+		Class.forName("org.h2.Driver");
+		connection = DriverManager.getConnection(DB_URL, "sa", "");
+		createObsTables();
+		
+		solrHome = new File(System.getProperty("java.io.tmpdir"), "chartsearch-benchmark-" + UUID.randomUUID());
+		properties = new EmbeddedSolrProperties(solrHome.getPath(), DB_URL, "sa", "");
+		WarmingSolrServer server = (WarmingSolrServer) new EmbeddedSolrServerCreator(properties).createSolrServer();
+		long deadline = System.currentTimeMillis() + 120000;
+		while (!server.isReady() && !server.isFailed() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+		}
+		if (server.isFailed())
+			throw new IllegalStateException("The embedded core failed to load", server.getLoadError());
+		Assert.assertTrue("The embedded core did not load", server.isReady());
+		solrServer = server;
+	}
+	
+	@AfterClass
+	public static void tearDown() throws Exception {
+		if (solrServer != null) {
+			solrServer.shutdown();
+		}
+		if (connection != null) {
+			connection.close();
+		}
+		FileUtils.deleteQuietly(solrHome);
+	}
+	
+	@Test
+	public void indexAll_shouldIndexMoreDocumentsPerSecondThanRowByRow() throws Exception {
+		double rowByRow = indexRowByRow(ROW_BY_ROW_OBS_COUNT);
+		double oneWorker = indexInBatches(1);
+		double fourWorkers = indexInBatches(4);
+		
+		System.out.println(String.format("Row by row, %d obs: %.1f docs/sec", ROW_BY_ROW_OBS_COUNT, rowByRow));
+		System.out.println(String.format("Batched on 1 worker, %d obs: %.1f docs/sec", OBS_COUNT, oneWorker));
+		System.out.println(String.format("Batched on 4 workers, %d obs: %.1f docs/sec", OBS_COUNT, fourWorkers));
+		
+		Assert.assertTrue(oneWorker > rowByRow);
+	}
+	
+	/**
+	 * Replays the former re-index: one query for all rows, then an add, a commit and an optimize
+	 * for every row
+	 */
+	@SuppressWarnings("deprecation")
+	private double indexRowByRow(int obsCount) throws Exception {
+		clearIndex();
+		long start = System.currentTimeMillis();
+		PreparedStatement statement = connection.prepareStatement(ROW_BY_ROW_SQL);
+		statement.setInt(1, obsCount);
+		ResultSet rs = statement.executeQuery();
+		int indexed = 0;
+		while (rs.next()) {
+			SolrInputDocument doc = new SolrInputDocument();
+			doc.addField("id", rs.getString("id"));
+			doc.addField("obs_id", rs.getInt("obs_id"));
+			doc.addField("person_id", rs.getInt("person_id"));
+			doc.addField("obs_datetime", rs.getDate("obs_datetime"));
+			doc.addField("obs_group_id", rs.getInt("obs_group_id"));
+			doc.addField("concept_name", rs.getString("concept_name"));
+			doc.addField("coded", rs.getString("coded"));
+			doc.addField("value_boolean", rs.getBoolean("value_boolean"));
+			doc.addField("value_datetime", rs.getDate("value_datetime"));
+			doc.addField("value_numeric", rs.getFloat("value_numeric"));
+			doc.addField("value_text", rs.getString("value_text"));
+			doc.addField("concept_class_name", rs.getString("concept_class_name"));
+			
+			solrServer.add(doc);
+			solrServer.commit(true, true);
+			solrServer.optimize(true, true);
+			indexed++;
+		}
+		rs.close();
+		Assert.assertEquals(obsCount, indexed);
+		return indexed * 1000.0 / Math.max(System.currentTimeMillis() - start, 1);
+	}
+	
+	private double indexInBatches(int workersCount) throws Exception {
+		clearIndex();
+		BulkIndexingProgress progress = new BulkIndexingProgress();
+		progress.tryStart();
+		new BulkIndexer(solrServer, properties, BATCH_SIZE, COMMIT_INTERVAL, workersCount, 0, progress)
+		        .indexAll(OBS_COUNT);
+		Assert.assertEquals(OBS_COUNT, progress.getIndexedCount());
+		return progress.getDocsPerSecond();
+	}
+	
+	private void clearIndex() throws Exception {
+		solrServer.deleteByQuery("*:*");
+		solrServer.commit();
+	}
+	
+	private static void createObsTables() throws Exception {
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE concept_class (concept_class_id INT PRIMARY KEY, name VARCHAR(255))");
+		statement.execute("CREATE TABLE concept_datatype (concept_datatype_id INT PRIMARY KEY, name VARCHAR(255))");
+		statement.execute("CREATE TABLE concept (concept_id INT PRIMARY KEY, class_id INT, datatype_id INT)");
+		statement.execute("CREATE TABLE concept_name (concept_name_id INT PRIMARY KEY, concept_id INT, name VARCHAR(255), "
+		        + "locale VARCHAR(50), concept_name_type VARCHAR(50), voided TINYINT)");
+		statement.execute("CREATE TABLE encounter_type (encounter_type_id INT PRIMARY KEY, name VARCHAR(255))");
+		statement.execute("CREATE TABLE encounter (encounter_id INT PRIMARY KEY, encounter_type INT)");
+		statement.execute("CREATE TABLE obs (obs_id INT PRIMARY KEY, uuid VARCHAR(38), person_id INT, concept_id INT, "
+		        + "encounter_id INT, obs_datetime TIMESTAMP, obs_group_id INT, value_coded INT, value_boolean TINYINT, "
+		        + "value_datetime TIMESTAMP, value_numeric DOUBLE, value_text VARCHAR(255), voided TINYINT)");
+		statement.execute("CREATE INDEX obs_concept ON obs (concept_id)");
+		
+		int conceptsCount = 200;
+		for (int i = 1; i <= 5; i++) {
+			statement.execute("INSERT INTO concept_class VALUES (" + i + ", 'Class " + i + "')");
+			statement.execute("INSERT INTO concept_datatype VALUES (" + i + ", 'Datatype " + i + "')");
+			statement.execute("INSERT INTO encounter_type VALUES (" + i + ", 'Encounter type " + i + "')");
+		}
+		for (int i = 1; i <= conceptsCount; i++) {
+			statement.execute("INSERT INTO concept VALUES (" + i + ", " + (i % 5 + 1) + ", " + (i % 5 + 1) + ")");
+			statement.execute("INSERT INTO concept_name VALUES (" + i + ", " + i + ", 'Concept " + i
+			        + "', 'en', 'FULLY_SPECIFIED', 0)");
+		}
+		for (int i = 1; i <= OBS_COUNT / 10; i++) {
+			statement.execute("INSERT INTO encounter VALUES (" + i + ", " + (i % 5 + 1) + ")");
+		}
+		statement.close();
+		
+		PreparedStatement insert = connection.prepareStatement("INSERT INTO obs VALUES (?, ?, ?, ?, ?, ?, NULL, ?, NULL, "
+		        + "NULL, ?, ?, 0)");
+		long day = 24L * 60 * 60 * 1000;
+		for (int i = 1; i <= OBS_COUNT; i++) {
+			insert.setInt(1, i);
+			insert.setString(2, UUID.randomUUID().toString());
+			insert.setInt(3, i % 1000 + 1);
+			insert.setInt(4, i % conceptsCount + 1);
+			insert.setInt(5, i % (OBS_COUNT / 10) + 1);
+			insert.setTimestamp(6, new Timestamp(System.currentTimeMillis() - (i % 3650) * day));
+			insert.setInt(7, (i * 7) % conceptsCount + 1);
+			insert.setDouble(8, i % 200);
+			insert.setString(9, "Obs text " + i);
+			insert.addBatch();
+			if (i % 1000 == 0) {
+				insert.executeBatch();
+			}
+		}
+		insert.executeBatch();
+		insert.close();
+	}
+	
+}
@@ -9,13 +9,18 @@
  */
 package org.openmrs.module.chartsearch.fragment.controller;
 
+import java.util.Date;
+
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.chartsearch.ChartSearchCache;
 import org.openmrs.module.chartsearch.GeneratingJson;
 import org.openmrs.module.chartsearch.SearchAPI;
 import org.openmrs.module.chartsearch.SearchPhrase;
+import org.openmrs.module.chartsearch.api.ChartSearchService;
 import org.openmrs.module.chartsearch.page.controller.ChartsearchPageController;
 import org.openmrs.ui.framework.fragment.FragmentModel;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -25,6 +30,8 @@ import org.springframework.web.bind.annotation.RequestParam;
  */
 public class TopAreaFragmentController {
 	
+	private static final int TYPE_AHEAD_SUGGESTIONS = 10;
+	
 	public void controller(FragmentModel model, @RequestParam("patientId") Patient patient) {
 		model.addAttribute("patientId", patient);
 		model.put("preferences", GeneratingJson.generateRightMatchedPreferencesJSON().toString());
@@ -41,6 +48,31 @@ public class TopAreaFragmentController {
 		return GeneratingJson.generateJson();
 	}
 	
+	/**
+	 * Completes the phrase being typed without running a search, the full search only runs once the
+	 * user submits the phrase
+	 */
+	public JSONArray getTypeAheadSuggestions(@RequestParam("patientId") Patient patient,
+	                                         @RequestParam("prefix") String prefix) {
+		ChartSearchService chartSearchService = Context.getService(ChartSearchService.class);
+		
+		return JSONArray.fromObject(chartSearchService.getTypeAheadSuggestions(patient.getPatientId(), prefix,
+		    TYPE_AHEAD_SUGGESTIONS));
+	}
+	
+	/**
+	 * Counts of the patient's data per time bucket for the timeline, from and to are in
+	 * milliseconds and default to the whole chart
+	 */
+	public JSONObject getTimeline(@RequestParam("patientId") Patient patient,
+	                              @RequestParam(value = "from", required = false) Long from,
+	                              @RequestParam(value = "to", required = false) Long to) {
+		ChartSearchService chartSearchService = Context.getService(ChartSearchService.class);
+		
+		return GeneratingJson.generateTimelineJson(chartSearchService.getTimeline(patient.getPatientId(),
+		    from != null ? new Date(from) : null, to != null ? new Date(to) : null));
+	}
+	
 	public JSONObject deleteSearchHistory(@RequestParam("historyUuid") String historyUuid) {
 		JSONObject json = new JSONObject();
 		ChartSearchCache cache = new ChartSearchCache();
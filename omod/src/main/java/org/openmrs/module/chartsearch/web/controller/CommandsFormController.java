@@ -37,6 +37,9 @@ public class CommandsFormController {
 		clearStrategy.put(IndexClearStrategies.IDS, "By patient ids");
 		clearStrategy.put(IndexClearStrategies.BASIC, "By max patients in index");
 		clearStrategy.put(IndexClearStrategies.NON_USAGE_TIME, "By max non usage time");
+		clearStrategy.put(IndexClearStrategies.LEAST_RECENTLY_USED, "By max patients, least recently searched first");
+		clearStrategy.put(IndexClearStrategies.LEAST_FREQUENTLY_USED, "By max patients, least often searched first");
+		clearStrategy.put(IndexClearStrategies.BUDGET, "By configured documents and size budget");
 		map.put("clearStrategies", clearStrategy);
 	}
 }
@@ -21,6 +21,7 @@ import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.chartsearch.ChartListItem;
 import org.openmrs.module.chartsearch.ObsItem;
+import org.openmrs.module.chartsearch.SearchAPI;
 import org.openmrs.module.chartsearch.solr.ChartSearchSearcher;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.web.dwr.ObsListItem;
@@ -96,6 +97,10 @@ public class DWRChartSearchService {
 			log.error("Error while finding observations + " + e.getMessage(), e);
 			objectList.add(Context.getMessageSourceService().getMessage("Obs.search.error") + " - " + e.getMessage());
 		}
+		finally {
+			// the facets are not returned here, they must not stay with the request thread
+			SearchAPI.clearSearchStatus();
+		}
 		
 		if (objectList.size() == 0)
 			objectList.add(Context.getMessageSourceService().getMessage("general.noMatchesFoundInLocale",
@@ -104,6 +109,21 @@ public class DWRChartSearchService {
 		return objectList;
 	}
 	
+	/**
+	 * Highlights of the visible rows, for use when highlighting is left out of the search
+	 * 
+	 * @param uuids ids of the visible obs
+	 */
+	public Map<String, List<String>> getHighlights(Integer patientId, String phrase, List<String> uuids) {
+		try {
+			return searcher.getHighlights(patientId, phrase, uuids);
+		}
+		catch (Exception e) {
+			log.error("Error while highlighting observations", e);
+			return new HashMap<String, List<String>>();
+		}
+	}
+	
 	// TODO replace with custom DetailsItem
 	public String getDetails(Integer id) {
 		ObsListItem obs = new ObsListItem(Context.getObsService().getObs(id), Context.getLocale());
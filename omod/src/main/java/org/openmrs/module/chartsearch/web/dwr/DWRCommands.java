@@ -9,7 +9,6 @@
  */
 package org.openmrs.module.chartsearch.web.dwr;
 
-import java.sql.SQLException;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -18,6 +17,7 @@ import org.openmrs.api.context.Context;
 import org.openmrs.module.chartsearch.api.ChartSearchService;
 import org.openmrs.module.chartsearch.server.PatientInfo;
 import org.openmrs.module.chartsearch.server.StatisticsInfo;
+import org.openmrs.module.chartsearch.solr.BulkIndexingProgress;
 import org.openmrs.module.chartsearch.solr.ChartSearchCustomIndexer;
 import org.openmrs.module.chartsearch.solr.ChartSearchIndexer;
 import org.openmrs.module.chartsearch.synonyms.SynonymGroup;
@@ -27,22 +27,24 @@ public class DWRCommands {
 	
 	protected static final Log log = LogFactory.getLog(DWRCommands.class);
 	
-	private static String indexingProgressInfo = "";
-	
 	private ChartSearchIndexer chartSearchIndexer = getComponent(ChartSearchIndexer.class);
 	
 	/**
-	 * @return the indexingProgressInfo
+	 * @return the progress of the running bulk indexing, "finished" once it is done
 	 */
 	public String getIndexingProgressInfo() {
-		return indexingProgressInfo;
-	}
-	
-	/**
-	 * @param indexingProgressInfo the indexing progress Information to set
-	 */
-	public void setIndexingProgressInfo(String progressInfo) {
-		DWRCommands.indexingProgressInfo = progressInfo;
+		BulkIndexingProgress progress = ChartSearchCustomIndexer.getProgress();
+		if (progress.isFinished())
+			return "finished";
+		if (!progress.isRunning())
+			return "";
+		if (progress.getIndexedCount() == 0)
+			return Context.getMessageSourceService().getMessage("chartsearch.indexing.patientData.fetchingData");
+		
+		Object[] args = new Object[] { progress.getIndexedCount(), progress.getTotal(),
+		        Math.round(progress.getDocsPerSecond()), progress.getEstimatedSecondsLeft() };
+		return Context.getMessageSourceService().getMessage("chartsearch.indexing.patientData.progress", args,
+		    Context.getLocale());
 	}
 	
 	public PatientInfo getPatientInfo(Integer patientId) {
@@ -65,6 +67,10 @@ public class DWRCommands {
 		return daemonsCount;
 	}
 	
+	public int resumeDaemonsAutoscaling() {
+		return chartSearchIndexer.resumeDaemonsAutoscaling();
+	}
+	
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public String deleteSynonymGroup(String groupName) {
 		ChartSearchService chartSearchService = Context.getService(ChartSearchService.class);
@@ -81,13 +87,7 @@ public class DWRCommands {
 	}
 	
 	public void indexAllPatientData(Integer numberOfResults) {
-		try {
-			ChartSearchCustomIndexer.indexAllPatientData(numberOfResults, DWRCommands.class);
-			setIndexingProgressInfo("finished");
-		}
-		catch (SQLException e) {
-			log.error("Error generated", e);
-		}
+		ChartSearchCustomIndexer.indexAllPatientData(numberOfResults);
 	}
 	
 	private <T> T getComponent(Class<T> clazz) {
@@ -60,6 +60,7 @@
 <div class="boxHeader"><spring:message code="chartsearch.commands.daemonManagement"/></div>
 <div class="box">
 	<input type="button" id="startDaemonBtn" value="Change daemons count" />
+	<input type="button" id="autoDaemonsBtn" value="Resume autoscaling" />
 	<table>
 		<tr>
 			<td><spring:message code="chartsearch.commands.daemonsCount"/></td>
@@ -6,8 +6,11 @@
 <openmrs:htmlInclude file="/moduleResources/chartsearch/js/chartSearch.js"/>
 <openmrs:htmlInclude file="/moduleResources/chartsearch/css/chartsearch.css"/>
 
+<openmrs:globalProperty key="chartsearch.highlight.lazy" var="lazyHighlighting" defaultValue="false"/>
+
 <script type="text/javascript">
 	var lastSearch;
+	var lazyHighlighting = ${lazyHighlighting == 'true'};
 	$j(document).ready(function() {
 		new ChartSearch("patientChartWidget", false, doObsSearch, doSelectionHandler, 
 				[{fieldName:"conceptName", header:" "}, 
@@ -21,7 +24,8 @@
 					columnVisibility: [true, true, false, false],
 					searchPhrase:'<request:parameter name="searchPhrase"/>',
 					showIncludeVerbose: false,
-					doSearchWhenEmpty: true
+					doSearchWhenEmpty: true,
+					drawHandler: lazyHighlighting ? fetchHighlights : null
 				});		
 	});
 	
@@ -38,6 +42,36 @@
 		DWRChartSearchService.findObsAndCount(${model.patient.patientId}, text, opts.includeVoided, null, null, null, null, opts.start, opts.length, getMatchCount, resultHandler);
 	}
 	
+	//searches leave highlighting out when it is lazy, fetch the highlights of the rows shown
+	function fetchHighlights(items, rows) {
+		var uuids = [];
+		var shownRows = {};
+		for (var i = 0; i < items.length; i++) {
+			var item = items[i];
+			if (!item || typeof item == 'string' || !item.uuid || item.highlightsFetched)
+				continue;
+			item.highlightsFetched = true;
+			uuids.push(item.uuid);
+			shownRows[item.uuid] = {item: item, row: rows[i]};
+		}
+		if (uuids.length == 0)
+			return;
+		
+		var search = lastSearch;
+		DWRChartSearchService.getHighlights(${model.patient.patientId}, search, uuids, function(highlights) {
+			//a newer search has replaced the rows
+			if (search != lastSearch)
+				return;
+			for (var uuid in highlights) {
+				var shown = shownRows[uuid];
+				if (!shown)
+					continue;
+				shown.item.highlights = highlights[uuid];
+				$j(shown.row).children().eq(0).html(nameColumnRenderer({aData: [shown.item.conceptName, shown.item.obsDate, highlights[uuid]]}));
+			}
+		});
+	}
+	
 	function nameColumnRenderer(oObj){
 
 		return "<div>"+oObj.aData[0]+ ": " + oObj.aData[2]+"</div><div style='font-style: italic;'>"+oObj.aData[1]+"</div>";
@@ -102,6 +102,7 @@ function ChartSearch(div, showIncludeVoided, searchHandler, selectionHandler, fi
  *   searchPhrase: The phrase to be set in the search box so that a search is triggered on page load to display initial items
  *   doSearchWhenEmpty: If it is set to true, it lists all items initially and filters them with the given search phrase. (default:false)
  *   verboseHandler: function to be called to return the text to display as verbose output
+ *   drawHandler: function(items, rows) to be called after each draw with the results and the row nodes of the page shown
  *   attributes: Array of names for attributes types to display in the list of results
  *   showSearchButton: Boolean, indicating whether to use search button for immediate search
  *   
@@ -417,6 +418,11 @@ function ChartSearch(div, showIncludeVoided, searchHandler, selectionHandler, fi
 		    	
 		    	/* Called to toggle the verbose output */
 		    	fnDrawCallback : function(oSettings){
+		    		if(self.options.drawHandler && self._table && self._results){
+		    			var pageEnd = Math.min(oSettings._iDisplayStart+oSettings._iDisplayLength, self._results.length);
+		    			self.options.drawHandler(self._results.slice(oSettings._iDisplayStart, pageEnd), 
+		    					self._table.fnGetNodes().slice(oSettings._iDisplayStart, pageEnd));
+		    		}
 		    		//we have nothing to hide
 		    		if(!self.options.showIncludeVerbose || !self._table || self._table.fnGetNodes().length == 0)
 	    				return;
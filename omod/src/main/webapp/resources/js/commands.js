@@ -4,6 +4,7 @@ $j(document).ready(function() {
 	$j('#statisticsBtn').click(getStatistics);
 	$j('#clearBtn').click(clearIndex);
 	$j('#startDaemonBtn').click(changeDaemonsCount);
+	$j('#autoDaemonsBtn').click(resumeDaemonsAutoscaling);
     $j('#deleteSynGrpBtn').click(deleteSynonymGroup);
 });
 
@@ -35,6 +36,12 @@ function getStatistics() {
 					$j("<div/>", {
 						text : "Prune patients count: " + pruneCount
 					}).appendTo("#statisticsResult");
+					$j("<div/>", {
+						text : "Search hit ratio: " + (stats.searchHitRatio * 100).toFixed(1) + "%"
+					}).appendTo("#statisticsResult");
+					$j("<div/>", {
+						text : "Daemons count: " + (stats.daemonsCountPinned ? "set by hand, autoscaling off" : "automatic")
+					}).appendTo("#statisticsResult");
 					$j("<div/>", {
 						id : "daemonStates",
 						text : "Daemon states:"
@@ -44,6 +51,8 @@ function getStatistics() {
 						var daemonStatus = stats.daemonStates[i]['daemon status'];
 						var daemonSuccessCount = stats.daemonStates[i]['daemon success count'];
 						var daemonFailCount = stats.daemonStates[i]['daemon fail count'];
+						if (stats.daemonStates[i]['daemon retired'])
+							daemonStatus += " (retiring)";
 						$j(
 								"<div/>",
 								{
@@ -83,4 +92,16 @@ function changeDaemonsCount() {
 		}
 		$j("#daemonsManagementResult").text(text);
 	});
+}
+
+function resumeDaemonsAutoscaling() {
+	DWRCommands.resumeDaemonsAutoscaling(function(daemonsCount) {
+		var text;
+		if (daemonsCount < 0)
+			text = "Failed to resume autoscaling";
+		else {
+			text = "Daemons are sized automatically again. Current daemons count: " + daemonsCount;
+		}
+		$j("#daemonsManagementResult").text(text);
+	});
 }
\ No newline at end of file
@@ -1091,6 +1091,15 @@ function refresh_data(json) {
 			noResultsMessageNote = "<br /><br /><br /><br /><p style='color:black;'><b>NOTE:</b> If this is the first time you are accessing this patient's chart, <b>Indexing patient data could still be in progress. </b>"
 					+ "So refresh the page a few moments from now. Otherwise the <b>patient has no data</b> (observations, allergies and appointments) that matches the current search or filter tried</p>";
 		}
+		if (json.warming) {
+			noResultsMessageNote += "<br /><p style='color:black;'><b>NOTE:</b> Chart search is still starting up, <b>search again in a moment.</b></p>";
+		}
+		if (json.loadFailed) {
+			noResultsMessageNote += "<br /><p style='color:black;'><b>NOTE:</b> Chart search failed to start, <b>ask your administrator to check the server log.</b></p>";
+		}
+		if (json.possiblyStale) {
+			noResultsMessageNote += "<br /><p style='color:black;'><b>NOTE:</b> Indexing this patient's data is still in progress, <b>results may be incomplete.</b></p>";
+		}
 
 		if (noResultsMessageNote !== "") {
 			document.getElementById('found-results-summary').innerHTML = noResultsMessage
@@ -10,7 +10,6 @@
 package org.apache.solr.handler.dataimport;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -18,11 +17,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
@@ -35,19 +32,29 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.CloseHook;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.handler.RequestHandlerBase;
+import org.apache.solr.handler.dataimport.custom.CommitCoalescer;
 import org.apache.solr.handler.dataimport.custom.IndexClearStrategies;
 import org.apache.solr.handler.dataimport.custom.IndexClearStrategy;
 import org.apache.solr.handler.dataimport.custom.IndexClearStrategyBasicImpl;
+import org.apache.solr.handler.dataimport.custom.IndexClearStrategyLeastFrequentlyUsedImpl;
+import org.apache.solr.handler.dataimport.custom.IndexClearStrategyLeastRecentlyUsedImpl;
 import org.apache.solr.handler.dataimport.custom.IndexClearStrategyNoActionImpl;
 import org.apache.solr.handler.dataimport.custom.IndexClearStrategyNonUsageTimeImpl;
 import org.apache.solr.handler.dataimport.custom.IndexClearStrategyWithIdImpl;
+import org.apache.solr.handler.dataimport.custom.ImportTicket;
+import org.apache.solr.handler.dataimport.custom.ImportTicketRegistry;
 import org.apache.solr.handler.dataimport.custom.IndexSizeManager;
+import org.apache.solr.handler.dataimport.custom.IntLongHashMap;
+import org.apache.solr.handler.dataimport.custom.PatientAccessTracker;
 import org.apache.solr.handler.dataimport.custom.PatientInfoCache;
 import org.apache.solr.handler.dataimport.custom.PatientInfoHolder;
-import org.apache.solr.handler.dataimport.custom.PatientInfoProvider;
 import org.apache.solr.handler.dataimport.custom.PatientInfoProviderCSVImpl;
+import org.apache.solr.handler.dataimport.custom.PatientInfoProviderJournalImpl;
+import org.apache.solr.handler.dataimport.custom.PatientInfoVisitor;
+import org.apache.solr.handler.dataimport.custom.PrewarmedPatients;
 import org.apache.solr.handler.dataimport.custom.SolrConfigParams;
 import org.apache.solr.handler.dataimport.custom.SolrQueryInfo;
+import org.apache.solr.request.LocalSolrQueryRequest;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.SolrRequestHandler;
 import org.apache.solr.response.RawResponseWriter;
@@ -57,8 +64,6 @@ import org.openmrs.module.chartsearch.server.ConfigCommands;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
-
 /**
  * TODO refactor! too many responsibilities
  */
@@ -66,13 +71,25 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 	
 	private static final Logger log = LoggerFactory.getLogger(ChartSearchDataImportHandler.class);
 	
-	private final BlockingQueue<SolrQueryInfo> queue = new LinkedBlockingQueue<SolrQueryInfo>();
+	private final BlockingQueue<SolrQueryInfo> queue = new PriorityBlockingQueue<SolrQueryInfo>();
+	
+	private final ImportTicketRegistry importTickets = new ImportTicketRegistry();
+	
+	private final PatientAccessTracker accessTracker = new PatientAccessTracker();
+	
+	private final PrewarmedPatients prewarmedPatients = new PrewarmedPatients();
 	
 	private PatientInfoCache cache;
 	
 	private PatientInfoHolder patientInfoHolder;
 	
-	private ExecutorService executorService;
+	private PatientInfoProviderJournalImpl patientInfoJournal;
+	
+	private DataImportDaemonPool daemonPool;
+	
+	private DataImportDaemonAutoscaler daemonsAutoscaler;
+	
+	private CommitCoalescer commitCoalescer;
 	
 	private SolrConfigParams configParams;
 	
@@ -82,7 +99,9 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 	
 	private ScheduledExecutorService indexSizeManagerScheduledExecutorService;
 	
-	private List<DataImportDaemon> dataImportDaemons = new ArrayList<DataImportDaemon>();
+	private ScheduledExecutorService daemonsAutoscalerScheduledExecutorService;
+	
+	private ScheduledExecutorService globalImportScheduledExecutorService;
 	
 	private int daemonsCount;
 	
@@ -103,7 +122,6 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 		configParams = new SolrConfigParams(defaults);
 		
 		daemonsCount = configParams.getDaemonsCount();
-		indexClearStrategy = configParams.getIndexClearStrategy();
 		indexSizemanagerTimeout = configParams.getIndexSizeManagerTimeout();
 		patientInfoTimeout = configParams.getPatientInfoTimeout();
 	}
@@ -134,7 +152,12 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 		
 		if (DataImporter.IMPORT_CMD.equals(command) || DataImporter.FULL_IMPORT_CMD.equals(command)
 		        || DataImporter.DELTA_IMPORT_CMD.equals(command)) {
-			queue.put(new SolrQueryInfo(req, rsp));
+			if (personId != null) {
+				prewarmedPatients.recordOpen(personId, cache.contains(personId));
+			}
+			ImportTicket ticket = importTickets.newTicket(personId);
+			queue.put(new SolrQueryInfo(req, rsp, ticket));
+			rsp.add(ConfigCommands.Labels.IMPORT_TICKET, ticket.getId());
 			return;
 		}
 		if (DataImporter.SHOW_CONF_CMD.equals(command)) {
@@ -158,7 +181,7 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 		
 		if (DataImporter.RELOAD_CONF_CMD.equals(command)) {
 			List<String> messages = new ArrayList<String>();
-			for (DataImportDaemon daemon : dataImportDaemons) {
+			for (DataImportDaemon daemon : daemonPool.getDaemons()) {
 				DataImporter importer = daemon.getIndexUpdater().getImporter();
 				String message;
 				if (importer.maybeReloadConfiguration(requestParams, defaultParams)) {
@@ -174,6 +197,21 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 		
 		if (ConfigCommands.PATIENT_STATE.equals(command)) {
 			handlePatientStateCommand(rsp, personId);
+		} else if (ConfigCommands.AWAIT_IMPORT.equals(command)) {
+			Long timeout = params.getLong(ConfigCommands.AWAIT_IMPORT_TIMEOUT);
+			// recorded before waiting so that a patient pruned from the index counts as a miss
+			if (personId != null && params.getBool(ConfigCommands.AWAIT_IMPORT_RECORD_ACCESS, false)) {
+				accessTracker.recordAccess(personId, cache.contains(personId));
+			}
+			handleAwaitImportCommand(rsp, personId, timeout);
+		} else if (ConfigCommands.IMPORT_GLOBAL.equals(command)) {
+			ImportTicket ticket = queueGlobalImport();
+			rsp.add(ConfigCommands.Labels.IMPORT_TICKET, ticket.getId());
+		} else if (ConfigCommands.PREWARM.equals(command)) {
+			Long until = params.getLong(ConfigCommands.PREWARM_UNTIL);
+			if (personId != null && until != null) {
+				handlePrewarmCommand(rsp, personId, until);
+			}
 		} else if (ConfigCommands.STATS.equals(command)) {
 			handleStatsCommand(rsp);
 		} else if (ConfigCommands.PRUNE.equals(command)) {
@@ -183,6 +221,10 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 			Integer ago = params.getInt(ConfigCommands.PRUNE_AGO);
 			handlePruneCommand(rsp, strategy, idsByComma, maxPatients, ago);
 		} else if (ConfigCommands.SHANGE_DAEMONS_COUNT.equals(command)) {
+			if (core != null && ConfigCommands.DAEMONS_COUNT_AUTO.equals(params.get(ConfigCommands.DAEMONS_COUNT))) {
+				handleAutoDaemonsCountCommand(rsp);
+				return;
+			}
 			Integer count = params.getInt(ConfigCommands.DAEMONS_COUNT);
 			if (core != null && count != null) {
 				handleChangeDaemonsCountCommand(rsp, count);
@@ -190,14 +232,83 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 		}
 	}
 	
+	/**
+	 * Queues a re-import of the entities which do not depend on a patient. Each of them must declare
+	 * a preImportDeleteQuery, otherwise cleaning before the import would empty the whole index.
+	 */
+	private ImportTicket queueGlobalImport() {
+		ModifiableSolrParams params = new ModifiableSolrParams();
+		params.set("command", DataImporter.FULL_IMPORT_CMD);
+		params.set("clean", true);
+		for (String entity : configParams.getGlobalEntities()) {
+			params.add("entity", entity);
+		}
+		
+		ImportTicket ticket = importTickets.newTicket(null);
+		SolrQueryRequest req = new LocalSolrQueryRequest(core, SolrParams.wrapDefaults(params, defaults));
+		queue.offer(new SolrQueryInfo(req, new SolrQueryResponse(), ticket));
+		log.info("Global import of {} queued", configParams.getGlobalEntities());
+		return ticket;
+	}
+	
+	/**
+	 * Pins the patient until the given time and queues a low priority import unless it is already
+	 * in the index
+	 */
+	private void handlePrewarmCommand(SolrQueryResponse rsp, int personId, long until) {
+		prewarmedPatients.pin(personId, until);
+		if (cache.contains(personId))
+			return;
+		
+		ModifiableSolrParams params = new ModifiableSolrParams();
+		params.set("command", DataImporter.IMPORT_CMD);
+		params.set("clean", false);
+		params.set("personId", personId);
+		
+		ImportTicket ticket = importTickets.newTicket(personId);
+		SolrQueryRequest req = new LocalSolrQueryRequest(core, SolrParams.wrapDefaults(params, defaults));
+		queue.offer(new SolrQueryInfo(req, new SolrQueryResponse(), ticket, true));
+		rsp.add(ConfigCommands.Labels.IMPORT_TICKET, ticket.getId());
+	}
+	
+	private void handleAwaitImportCommand(SolrQueryResponse rsp, Integer personId, Long timeout) {
+		boolean completed;
+		try {
+			completed = importTickets.await(personId, timeout != null ? timeout : 0L);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			completed = false;
+		}
+		rsp.add(ConfigCommands.Labels.IMPORT_COMPLETED, completed);
+	}
+	
 	private void handleChangeDaemonsCountCommand(SolrQueryResponse rsp, Integer count) {
-		executorService.shutdownNow();
-		dataImportDaemons.clear();
-		runDataImportDaemons(core, count);
+		if (daemonsAutoscaler != null) {
+			daemonsAutoscaler.pin(count);
+			log.info("Autoscaling pinned to {} daemons", count);
+		}
+		daemonPool.resize(count);
 		this.daemonsCount = count;
 		rsp.add("daemonsCount", daemonsCount);
 	}
 	
+	/**
+	 * Undoes a count set by hand, the autoscaler sizes the pool between the configured minimum and
+	 * maximum again. Without autoscaling the configured count is restored.
+	 */
+	private void handleAutoDaemonsCountCommand(SolrQueryResponse rsp) {
+		if (daemonsAutoscaler != null) {
+			daemonsAutoscaler.unpin();
+			daemonsAutoscaler.run();
+			log.info("Autoscaling of the daemons resumed");
+		} else {
+			daemonPool.resize(configParams.getDaemonsCount());
+		}
+		this.daemonsCount = daemonPool.getSize();
+		rsp.add("daemonsCount", daemonsCount);
+	}
+	
 	private void handlePruneCommand(SolrQueryResponse rsp, String strategyName, String idsByComma, Integer maxPatients,
 	                                Integer ago) {
 		int pruneCount = 0;
@@ -232,6 +343,14 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 		} else if (strategyName.toUpperCase().equals(IndexClearStrategies.NON_USAGE_TIME.toString().toUpperCase())) {
 			if (ago != null)
 				strategy = new IndexClearStrategyNonUsageTimeImpl(ago);
+		} else if (strategyName.toUpperCase().equals(IndexClearStrategies.LEAST_RECENTLY_USED.toString().toUpperCase())) {
+			if (maxPatients != null)
+				strategy = new IndexClearStrategyLeastRecentlyUsedImpl(maxPatients, accessTracker);
+		} else if (strategyName.toUpperCase().equals(IndexClearStrategies.LEAST_FREQUENTLY_USED.toString().toUpperCase())) {
+			if (maxPatients != null)
+				strategy = new IndexClearStrategyLeastFrequentlyUsedImpl(maxPatients, accessTracker);
+		} else if (strategyName.toUpperCase().equals(IndexClearStrategies.BUDGET.toString().toUpperCase())) {
+			strategy = configParams.getIndexClearStrategy(IndexClearStrategies.BUDGET.ordinal(), core, accessTracker);
 		}
 		
 		if (strategy == null) {
@@ -248,7 +367,7 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 	
 	private void handleStatsCommand(SolrQueryResponse rsp) {
 		List<Object> list = new ArrayList<Object>();
-		for (DataImportDaemon daemon : dataImportDaemons) {
+		for (DataImportDaemon daemon : daemonPool.getDaemons()) {
 			HashMap<String, Object> item = new HashMap<String, Object>();
 			
 			int id = daemon.getId();
@@ -260,6 +379,7 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 			item.put(ConfigCommands.Labels.DAEMON_STATUS, status);
 			item.put(ConfigCommands.Labels.DAEMON_SUCCESS_COUNT, successCount);
 			item.put(ConfigCommands.Labels.DAEMON_FAIL_COUNT, failCount);
+			item.put(ConfigCommands.Labels.DAEMON_RETIRED, daemon.isRetired());
 			
 			list.add(item);
 		}
@@ -267,8 +387,22 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 		int clearedPatientsCount = indexSizeManager.getClearedPatientsCount();
 		
 		rsp.add(ConfigCommands.Labels.DAEMON_STATES, list);
+		rsp.add(ConfigCommands.Labels.DAEMONS_COUNT_PINNED, daemonsAutoscaler != null && daemonsAutoscaler.isPinned());
 		rsp.add(ConfigCommands.Labels.CLEAR_STRATEGY, clearStrategy);
 		rsp.add(ConfigCommands.Labels.CLEARED_PATIENTS_COUNT, clearedPatientsCount);
+		rsp.add(ConfigCommands.Labels.PRUNE_TIME, indexSizeManager.getPruneTime());
+		rsp.add(ConfigCommands.Labels.PRUNE_STALL_TIME, indexSizeManager.getPruneStallTime());
+		rsp.add(ConfigCommands.Labels.SEARCH_ACCESS_COUNT, accessTracker.getAccessCount());
+		rsp.add(ConfigCommands.Labels.SEARCH_HIT_COUNT, accessTracker.getHitCount());
+		rsp.add(ConfigCommands.Labels.SEARCH_HIT_RATIO, accessTracker.getHitRatio());
+		rsp.add(ConfigCommands.Labels.PREWARMED_PATIENTS_COUNT, prewarmedPatients.getPrewarmedCount());
+		rsp.add(ConfigCommands.Labels.PREWARMED_FIRST_OPENS_COUNT, prewarmedPatients.getFirstOpensCount());
+		rsp.add(ConfigCommands.Labels.PREWARMED_WARM_FIRST_OPENS_COUNT, prewarmedPatients.getWarmFirstOpensCount());
+		rsp.add(ConfigCommands.Labels.COMMIT_REQUESTS_COUNT, commitCoalescer.getRequestCount());
+		rsp.add(ConfigCommands.Labels.COMMITS_COUNT, commitCoalescer.getCommitCount());
+		rsp.add(ConfigCommands.Labels.PATIENT_INFO_LOAD_TIME, patientInfoJournal.getLoadTime());
+		rsp.add(ConfigCommands.Labels.PATIENT_INFO_BYTES_WRITTEN, patientInfoJournal.getBytesWritten());
+		rsp.add(ConfigCommands.Labels.PATIENT_INFO_COMPACTIONS_COUNT, patientInfoJournal.getCompactionsCount());
 	}
 	
 	private void handlePatientStateCommand(SolrQueryResponse rsp, Integer personId) {
@@ -310,34 +444,46 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 			}
 		}
 		
-		String fileName = core.getResourceLoader().getDataDir() + File.separatorChar + "Patient information.data";
-		File patientInfoFile = new File(fileName);
-		if (!patientInfoFile.exists()) {
-			try {
-				patientInfoFile.createNewFile();
-			}
-			catch (IOException e) {
-				// TODO Auto-generated catch block
-				log.error("Error creating patient information file", e);
-			}
-		}
-		PatientInfoProvider provider = new PatientInfoProviderCSVImpl(fileName);
-		cache = new PatientInfoCache(provider);
+		String dataDir = core.getResourceLoader().getDataDir() + File.separatorChar;
+		patientInfoJournal = new PatientInfoProviderJournalImpl(dataDir + "Patient information.journal");
+		migratePatientInfo(new File(dataDir + "Patient information.data"),
+		    new File(dataDir + "Patient information.journal"));
+		cache = new PatientInfoCache(patientInfoJournal);
 		patientInfoHolder = new PatientInfoHolder(cache);
 		
+		commitCoalescer = new CommitCoalescer(core, configParams.getCommitInterval());
+		
 		runDataImportDaemons(core, daemonsCount);
 		
+		if (configParams.getDaemonsAutoscaleInterval() > 0) {
+			runScheduledDaemonsAutoscaler(configParams.getDaemonsAutoscaleInterval());
+		}
+		
+		indexClearStrategy = configParams.getIndexClearStrategy(core, accessTracker);
 		runScheduledIndexSizeManager(core, indexClearStrategy, indexSizemanagerTimeout);
 		
 		runScheduledPatientInfoUpdates(patientInfoTimeout);
 		
+		if (configParams.isGlobalDataOwner()) {
+			runStartupGlobalImport();
+		} else {
+			log.info("Global data is kept by another shard, skipping the startup global import");
+		}
+		
 		core.addCloseHook(new CloseHook() {
 			
 			@Override
 			public void preClose(SolrCore core) {
-				executorService.shutdownNow();
+				daemonPool.shutdown();
+				if (daemonsAutoscalerScheduledExecutorService != null) {
+					daemonsAutoscalerScheduledExecutorService.shutdownNow();
+				}
 				indexSizeManagerScheduledExecutorService.shutdownNow();
 				patientInfoScheduledExecutorService.shutdownNow();
+				if (globalImportScheduledExecutorService != null) {
+					globalImportScheduledExecutorService.shutdownNow();
+				}
+				commitCoalescer.shutdown();
 				log.info("ExecutorServices were shutdown");
 			}
 			
@@ -348,6 +494,25 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 		});
 	}
 	
+	/**
+	 * Moves the patient information of the former CSV file into a new journal
+	 */
+	private void migratePatientInfo(File csvFile, File journalFile) {
+		if (journalFile.exists() || !csvFile.exists())
+			return;
+		
+		final IntLongHashMap data = new IntLongHashMap();
+		new PatientInfoProviderCSVImpl(csvFile.getPath()).readData(new PatientInfoVisitor() {
+			
+			@Override
+			public void visit(int patientId, long lastIndexTime) {
+				data.put(patientId, lastIndexTime);
+			}
+		});
+		patientInfoJournal.compact(data);
+		log.info("Migrated {} patients from {} to {}", new Object[] { data.size(), csvFile, journalFile });
+	}
+	
 	private Map<String, Object> getParamsMap(SolrParams params) {
 		Iterator<String> names = params.getParameterNamesIterator();
 		Map<String, Object> result = new HashMap<String, Object>();
@@ -365,36 +530,21 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 	}
 	
 	private void runDataImportDaemons(SolrCore core, int daemonsCount) {
-		ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat("ChartSearchDataImport Daemon #%d").build();
-		executorService = Executors.newFixedThreadPool(daemonsCount, factory);
-		for (int i = 0; i < daemonsCount; i++) {
-			try {
-				startImportDaemon(i, core);
-			}
-			catch (Exception e) {
-				log.error("Error in DataImporter instantiating", e);
-			}
-		}
-	}
-	
-	private void startImportDaemon(int id, SolrCore core) {
-		DataImportDaemon daemon = createDateImportDaemon(id, core);
-		dataImportDaemons.add(daemon);
-		executorService.execute(daemon);
-		log.info("Executed daemon #{}", id);
+		daemonPool = new DataImportDaemonPool(queue, core, myName, initArgs, patientInfoHolder, commitCoalescer);
+		daemonPool.resize(daemonsCount);
 	}
 	
-	private DataImportDaemon createDateImportDaemon(int id, SolrCore core) {
-		String importerName = myName;
-		DataImporter importer = new DataImporter(core, importerName);
-		DataImportDaemon daemon = new DataImportDaemon(id, queue, new ChartSearchIndexUpdater(importer, initArgs,
-		        patientInfoHolder));
-		return daemon;
+	private void runScheduledDaemonsAutoscaler(int interval) {
+		daemonsAutoscaler = new DataImportDaemonAutoscaler(daemonPool, configParams.getMinDaemonsCount(),
+		        configParams.getMaxDaemonsCount(), configParams.getMaxImportTime());
+		
+		daemonsAutoscalerScheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+		daemonsAutoscalerScheduledExecutorService.scheduleWithFixedDelay(daemonsAutoscaler, interval, interval, TimeUnit.SECONDS);
 	}
 	
 	private void runScheduledIndexSizeManager(SolrCore core, IndexClearStrategy clearStrategy, int timeout) {
 		
-		indexSizeManager = new IndexSizeManager(core, cache, clearStrategy);
+		indexSizeManager = new IndexSizeManager(core, cache, clearStrategy, commitCoalescer, prewarmedPatients);
 		
 		indexSizeManagerScheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
 		indexSizeManagerScheduledExecutorService.scheduleAtFixedRate(new Runnable() {
@@ -407,14 +557,29 @@ public class ChartSearchDataImportHandler extends RequestHandlerBase implements
 		
 	}
 	
+	/**
+	 * Imports the global entities once the core has finished loading
+	 */
+	private void runStartupGlobalImport() {
+		globalImportScheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+		globalImportScheduledExecutorService.schedule(new Runnable() {
+			
+			@Override
+			public void run() {
+				queueGlobalImport();
+			}
+		}, 10, TimeUnit.SECONDS);
+	}
+	
 	private void runScheduledPatientInfoUpdates(int timeout) {
 		patientInfoScheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
 		patientInfoScheduledExecutorService.scheduleAtFixedRate(new Runnable() {
 			
 			@Override
 			public void run() {
-				cache.save();
-				
+				if (!cache.save()) {
+					log.warn("Patient information could not be saved, retrying on the next update");
+				}
 			}
 		}, 10, timeout, TimeUnit.SECONDS);
 	}
@@ -12,9 +12,11 @@ package org.apache.solr.handler.dataimport;
 import static org.apache.solr.handler.dataimport.DataImporter.IMPORT_CMD;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.solr.common.SolrInputDocument;
@@ -22,7 +24,9 @@ import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.params.UpdateParams;
 import org.apache.solr.common.util.ContentStream;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.handler.dataimport.config.Entity;
 import org.apache.solr.handler.dataimport.custom.PatientInfoHolder;
+import org.apache.solr.handler.dataimport.custom.SolrConfigParams;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
@@ -42,17 +46,26 @@ public class ChartSearchIndexUpdater {
 	
 	private final PatientInfoHolder patientInfoHolder;
 	
+	private final List<String> globalEntities;
+	
 	private int successCount = 0;
 	
 	private int failCount = 0;
 	
-	private String status = ConfigCommands.Labels.IDLE;
+	private volatile String status = ConfigCommands.Labels.IDLE;
+	
+	/**
+	 * Moving average of the import duration, mostly spent waiting for the database
+	 */
+	private volatile long averageImportTime = 0;
 	
 	@SuppressWarnings("rawtypes")
 	public ChartSearchIndexUpdater(DataImporter dataImporter, NamedList initArgs, PatientInfoHolder patientInfoHolder) {
 		this.importer = dataImporter;
 		this.initArgs = initArgs;
 		this.patientInfoHolder = patientInfoHolder;
+		this.globalEntities = new SolrConfigParams(SolrParams.toSolrParams((NamedList) initArgs.get("defaults")))
+		        .getGlobalEntities();
 	}
 	
 	/*	
@@ -77,6 +90,8 @@ public class ChartSearchIndexUpdater {
 			}
 		}
 		Map<String, Object> paramsMap = getParamsMap(params);
+		// the daemon requests a coalesced commit after the import
+		paramsMap.put("commit", "false");
 		
 		RequestInfo requestParams = new RequestInfo(paramsMap, contentStream);
 		
@@ -94,17 +109,26 @@ public class ChartSearchIndexUpdater {
 				// TODO Auto-generated catch block
 				log.error("Error generated", e);
 			}
+			if (patientId != null && !paramsMap.containsKey("entity")) {
+				// forms and other global entities are kept up to date by the global import
+				paramsMap.put("entity", getPatientEntities());
+				requestParams = new RequestInfo(paramsMap, contentStream);
+			}
 			UpdateRequestProcessorChain processorChain = req.getCore().getUpdateProcessingChain(
 			    params.get(UpdateParams.UPDATE_CHAIN));
 			UpdateRequestProcessor processor = processorChain.createProcessor(req, rsp);
 			
 			SolrWriter sw = getSolrWriter(processor, req);
+			long startTime = System.currentTimeMillis();
 			try {
 				importer.runCmd(requestParams, sw);
-				patientInfoHolder.setLastIndexTime(patientId);
+				if (patientId != null) {
+					patientInfoHolder.setLastIndexTime(patientId);
+				}
 			}
 			finally {
 				sw.close();
+				updateAverageImportTime(System.currentTimeMillis() - startTime);
 			}
 			log.info("Import finished in the daemon {}", Thread.currentThread().getName());
 		}
@@ -132,6 +156,28 @@ public class ChartSearchIndexUpdater {
 		return failCount;
 	}
 	
+	/**
+	 * @return moving average of the import duration in milliseconds
+	 */
+	public long getAverageImportTime() {
+		return averageImportTime;
+	}
+	
+	private void updateAverageImportTime(long importTime) {
+		long average = averageImportTime;
+		averageImportTime = average == 0 ? importTime : (average * 3 + importTime) / 4;
+	}
+	
+	private List<String> getPatientEntities() {
+		List<String> entities = new ArrayList<String>();
+		for (Entity entity : importer.getConfig().getEntities()) {
+			if (!globalEntities.contains(entity.getName())) {
+				entities.add(entity.getName());
+			}
+		}
+		return entities;
+	}
+	
 	private SolrWriter getSolrWriter(final UpdateRequestProcessor processor, SolrQueryRequest req) {
 		
 		return new SolrWriter(
@@ -10,38 +10,59 @@
 package org.apache.solr.handler.dataimport;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.solr.handler.dataimport.custom.CommitCoalescer;
 import org.apache.solr.handler.dataimport.custom.SolrQueryInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Takes imports from the queue until it is retired, a retired daemon finishes its current import
+ * before stopping
  */
 public class DataImportDaemon implements Runnable {
 	
 	private static final Logger log = LoggerFactory.getLogger(DataImportDaemon.class);
 	
+	private static final long POLL_TIMEOUT = 1; // seconds
+	
 	private final BlockingQueue<SolrQueryInfo> queue;
 	
 	private final int id;
 	
 	private final ChartSearchIndexUpdater chartSearchIndexUpdater;
 	
-	public DataImportDaemon(int id, BlockingQueue<SolrQueryInfo> queue, ChartSearchIndexUpdater chartSearchIndexUpdater) {
+	private final CommitCoalescer commitCoalescer;
+	
+	private volatile boolean retired = false;
+	
+	public DataImportDaemon(int id, BlockingQueue<SolrQueryInfo> queue, ChartSearchIndexUpdater chartSearchIndexUpdater,
+	                        CommitCoalescer commitCoalescer) {
 		this.queue = queue;
 		this.id = id;
 		this.chartSearchIndexUpdater = chartSearchIndexUpdater;
+		this.commitCoalescer = commitCoalescer;
 	}
 	
 	@Override
 	public void run() {
 		log.info("Daemon #{} is running", id);
-		while (!(Thread.currentThread().isInterrupted())) {
+		while (!retired && !(Thread.currentThread().isInterrupted())) {
 			try {
-				SolrQueryInfo info = queue.take();
+				SolrQueryInfo info = queue.poll(POLL_TIMEOUT, TimeUnit.SECONDS);
+				if (info == null)
+					continue;
 				log.info("Import started in daemon #{}", id);
-				chartSearchIndexUpdater.handleRequest(info.getRequest(), info.getResponse());
+				boolean successful = false;
+				try {
+					chartSearchIndexUpdater.handleRequest(info.getRequest(), info.getResponse());
+					successful = true;
+				}
+				finally {
+					// the ticket is completed once the coalesced commit has made the import visible
+					commitCoalescer.requestCommit(info.getTicket(), successful);
+				}
 				log.info("Import finished in daemon #{}", id);
 			}
 			catch (InterruptedException e) {
@@ -49,9 +70,21 @@ public class DataImportDaemon implements Runnable {
 				Thread.currentThread().interrupt();
 			}
 			catch (Exception e) {
-				log.error("Exception");
+				log.error("Exception", e);
 			}
 		}
+		log.info("Daemon #{} is stopped", id);
+	}
+	
+	/**
+	 * Asks the daemon to stop once its current import, if any, is finished
+	 */
+	public void retire() {
+		retired = true;
+	}
+	
+	public boolean isRetired() {
+		return retired;
 	}
 	
 	public int getId() {
@@ -0,0 +1,100 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically sizes a {@link DataImportDaemonPool} between a minimum and a maximum. Grows while
+ * imports queue up faster than the daemons drain them, unless the database is already slow to
+ * answer, and shrinks when daemons are left idle or the database is overloaded.
+ */
+public class DataImportDaemonAutoscaler implements Runnable {
+	
+	private static final Logger log = LoggerFactory.getLogger(DataImportDaemonAutoscaler.class);
+	
+	private final DataImportDaemonPool pool;
+	
+	private final int minDaemonsCount;
+	
+	private final int maxDaemonsCount;
+	
+	/**
+	 * Count set by hand, null while the pool is sized automatically
+	 */
+	private Integer pinnedDaemonsCount;
+	
+	private final long maxImportTime;
+	
+	/**
+	 * @param maxImportTime average import duration in milliseconds above which the database is
+	 *            considered overloaded, 0 to ignore it
+	 */
+	public DataImportDaemonAutoscaler(DataImportDaemonPool pool, int minDaemonsCount, int maxDaemonsCount,
+	                                  long maxImportTime) {
+		this.pool = pool;
+		this.minDaemonsCount = minDaemonsCount;
+		this.maxDaemonsCount = Math.max(minDaemonsCount, maxDaemonsCount);
+		this.maxImportTime = maxImportTime;
+	}
+	
+	/**
+	 * Keeps the pool at a count set by hand, which autoscaling would otherwise undo at its next run
+	 */
+	public synchronized void pin(int daemonsCount) {
+		this.pinnedDaemonsCount = daemonsCount;
+	}
+	
+	/**
+	 * Sizes the pool between the configured minimum and maximum again
+	 */
+	public synchronized void unpin() {
+		this.pinnedDaemonsCount = null;
+	}
+	
+	public synchronized boolean isPinned() {
+		return pinnedDaemonsCount != null;
+	}
+	
+	@Override
+	public synchronized void run() {
+		try {
+			int size = pool.getSize();
+			int target = getTargetSize(size, pool.getQueueDepth(), pool.getIdleCount(), pool.getAverageImportTime());
+			if (target != size) {
+				log.info("Resizing import daemons from {} to {}", size, target);
+				pool.resize(target);
+			}
+		}
+		catch (Exception e) {
+			log.error("Error generated", e);
+		}
+	}
+	
+	synchronized int getTargetSize(int size, int queueDepth, int idleCount, long averageImportTime) {
+		if (pinnedDaemonsCount != null)
+			return pinnedDaemonsCount;
+		
+		boolean databaseOverloaded = maxImportTime > 0 && averageImportTime > maxImportTime;
+		
+		if (size < minDaemonsCount)
+			return minDaemonsCount;
+		if (size > maxDaemonsCount)
+			return maxDaemonsCount;
+		
+		if (queueDepth > size && !databaseOverloaded && size < maxDaemonsCount)
+			return size + 1;
+		if ((databaseOverloaded || (queueDepth == 0 && idleCount > 1)) && size > minDaemonsCount)
+			return size - 1;
+		return size;
+	}
+	
+}
@@ -0,0 +1,177 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.handler.dataimport.custom.CommitCoalescer;
+import org.apache.solr.handler.dataimport.custom.PatientInfoHolder;
+import org.apache.solr.handler.dataimport.custom.SolrQueryInfo;
+import org.openmrs.module.chartsearch.server.ConfigCommands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Elastic pool of import daemons sharing one queue. Shrinking retires daemons gracefully and their
+ * {@link DataImporter}s are kept for reuse when the pool grows again.
+ */
+public class DataImportDaemonPool {
+	
+	private static final Logger log = LoggerFactory.getLogger(DataImportDaemonPool.class);
+	
+	private final BlockingQueue<SolrQueryInfo> queue;
+	
+	private final SolrCore core;
+	
+	private final String importerName;
+	
+	@SuppressWarnings("rawtypes")
+	private final NamedList initArgs;
+	
+	private final PatientInfoHolder patientInfoHolder;
+	
+	private final CommitCoalescer commitCoalescer;
+	
+	private final ExecutorService executorService;
+	
+	private final List<DataImportDaemon> daemons = new ArrayList<DataImportDaemon>();
+	
+	/**
+	 * Retired daemons still finishing their current import
+	 */
+	private final List<DataImportDaemon> retiringDaemons = new ArrayList<DataImportDaemon>();
+	
+	private final LinkedList<ChartSearchIndexUpdater> idleUpdaters = new LinkedList<ChartSearchIndexUpdater>();
+	
+	private int nextDaemonId = 0;
+	
+	@SuppressWarnings("rawtypes")
+	public DataImportDaemonPool(BlockingQueue<SolrQueryInfo> queue, SolrCore core, String importerName,
+	                            NamedList initArgs, PatientInfoHolder patientInfoHolder,
+	                            CommitCoalescer commitCoalescer) {
+		this.queue = queue;
+		this.core = core;
+		this.importerName = importerName;
+		this.initArgs = initArgs;
+		this.patientInfoHolder = patientInfoHolder;
+		this.commitCoalescer = commitCoalescer;
+		
+		ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat("ChartSearchDataImport Daemon #%d").build();
+		this.executorService = Executors.newCachedThreadPool(factory);
+	}
+	
+	/**
+	 * Starts or retires daemons until the given number of daemons is running. Retired daemons
+	 * finish their current import first.
+	 */
+	public synchronized void resize(int count) {
+		while (daemons.size() < count) {
+			try {
+				startDaemon();
+			}
+			catch (Exception e) {
+				log.error("Error in DataImporter instantiating", e);
+				break;
+			}
+		}
+		while (daemons.size() > count) {
+			DataImportDaemon daemon = daemons.remove(daemons.size() - 1);
+			daemon.retire();
+			retiringDaemons.add(daemon);
+			log.info("Retired daemon #{}", daemon.getId());
+		}
+	}
+	
+	private void startDaemon() {
+		ChartSearchIndexUpdater updater = idleUpdaters.poll();
+		if (updater == null) {
+			DataImporter importer = new DataImporter(core, importerName);
+			updater = new ChartSearchIndexUpdater(importer, initArgs, patientInfoHolder);
+		}
+		final DataImportDaemon daemon = new DataImportDaemon(nextDaemonId++, queue, updater, commitCoalescer);
+		daemons.add(daemon);
+		executorService.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					daemon.run();
+				}
+				finally {
+					release(daemon);
+				}
+			}
+		});
+		log.info("Executed daemon #{}", daemon.getId());
+	}
+	
+	private synchronized void release(DataImportDaemon daemon) {
+		daemons.remove(daemon);
+		retiringDaemons.remove(daemon);
+		idleUpdaters.push(daemon.getIndexUpdater());
+	}
+	
+	/**
+	 * @return running daemons followed by the retired ones which have not finished their import yet
+	 */
+	public synchronized List<DataImportDaemon> getDaemons() {
+		List<DataImportDaemon> result = new ArrayList<DataImportDaemon>(daemons);
+		result.addAll(retiringDaemons);
+		return result;
+	}
+	
+	public synchronized int getSize() {
+		return daemons.size();
+	}
+	
+	public synchronized int getIdleCount() {
+		int idleCount = 0;
+		for (DataImportDaemon daemon : daemons) {
+			if (ConfigCommands.Labels.IDLE.equals(daemon.getIndexUpdater().getStatus()))
+				idleCount++;
+		}
+		return idleCount;
+	}
+	
+	/**
+	 * @return average import duration over the running daemons in milliseconds
+	 */
+	public synchronized long getAverageImportTime() {
+		long total = 0;
+		int measured = 0;
+		for (DataImportDaemon daemon : daemons) {
+			long importTime = daemon.getIndexUpdater().getAverageImportTime();
+			if (importTime > 0) {
+				total += importTime;
+				measured++;
+			}
+		}
+		return measured == 0 ? 0 : total / measured;
+	}
+	
+	public int getQueueDepth() {
+		return queue.size();
+	}
+	
+	public void shutdown() {
+		executorService.shutdownNow();
+	}
+	
+}
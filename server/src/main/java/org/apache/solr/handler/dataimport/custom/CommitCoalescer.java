@@ -0,0 +1,154 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.common.params.MapSolrParams;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequestBase;
+import org.apache.solr.update.CommitUpdateCommand;
+import org.apache.solr.update.UpdateHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the commit requests of the import daemons and the index size manager into at most one
+ * soft commit per interval. Import tickets handed over with a request are
+ * completed once the commit has made their documents visible.
+ */
+public class CommitCoalescer {
+	
+	private static final Logger log = LoggerFactory.getLogger(CommitCoalescer.class);
+	
+	private final UpdateHandler handler;
+	
+	private final SolrQueryRequest req;
+	
+	private final long interval;
+	
+	private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+	
+	private final AtomicBoolean commitScheduled = new AtomicBoolean();
+	
+	private final Queue<WaitingTicket> waitingTickets = new ConcurrentLinkedQueue<WaitingTicket>();
+	
+	private final AtomicLong requestCount = new AtomicLong();
+	
+	private final AtomicLong commitCount = new AtomicLong();
+	
+	/**
+	 * @param interval minimal time between two commits in milliseconds
+	 */
+	public CommitCoalescer(SolrCore core, long interval) {
+		this.handler = core.getUpdateHandler();
+		this.req = new SolrQueryRequestBase(
+		                                    core, new MapSolrParams(new HashMap<String, String>())) {};
+		this.interval = interval;
+	}
+	
+	public void requestCommit() {
+		requestCount.incrementAndGet();
+		scheduleCommit();
+	}
+	
+	/**
+	 * Requests a commit and completes the ticket after it
+	 */
+	public void requestCommit(ImportTicket ticket, boolean successful) {
+		waitingTickets.add(new WaitingTicket(ticket, successful));
+		requestCommit();
+	}
+	
+	private void scheduleCommit() {
+		if (commitScheduled.compareAndSet(false, true)) {
+			executorService.schedule(new Runnable() {
+				
+				@Override
+				public void run() {
+					commit();
+				}
+			}, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	private void commit() {
+		// requests arriving from now on schedule the next commit
+		commitScheduled.set(false);
+		List<WaitingTicket> tickets = new ArrayList<WaitingTicket>();
+		WaitingTicket waiting;
+		while ((waiting = waitingTickets.poll()) != null) {
+			tickets.add(waiting);
+		}
+		
+		boolean committed = false;
+		try {
+			CommitUpdateCommand commitCmd = new CommitUpdateCommand(req, false);
+			commitCmd.softCommit = true;
+			handler.commit(commitCmd);
+			commitCount.incrementAndGet();
+			committed = true;
+		}
+		catch (IOException e) {
+			log.error("Error generated", e);
+		}
+		catch (RuntimeException e) {
+			log.error("Error generated", e);
+		}
+		finally {
+			for (WaitingTicket ticket : tickets) {
+				ticket.ticket.complete(committed && ticket.successful);
+			}
+		}
+	}
+	
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+	
+	public long getCommitCount() {
+		return commitCount.get();
+	}
+	
+	/**
+	 * Stops scheduling commits and releases the waiting tickets, the core commits on close itself
+	 */
+	public void shutdown() {
+		executorService.shutdownNow();
+		WaitingTicket waiting;
+		while ((waiting = waitingTickets.poll()) != null) {
+			waiting.ticket.complete(false);
+		}
+	}
+	
+	private static class WaitingTicket {
+		
+		private final ImportTicket ticket;
+		
+		private final boolean successful;
+		
+		private WaitingTicket(ImportTicket ticket, boolean successful) {
+			this.ticket = ticket;
+			this.successful = successful;
+		}
+	}
+	
+}
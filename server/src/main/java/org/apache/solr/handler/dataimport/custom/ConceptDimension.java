@@ -0,0 +1,200 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.solr.handler.dataimport.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * English name, synonyms, class and datatype of every concept, kept across imports so that a patient import
+ * only reads that patient's obs. Loaded once and then refreshed with the concepts changed since
+ * the previous refresh.
+ */
+public class ConceptDimension {
+	
+	private static final Logger log = LoggerFactory.getLogger(ConceptDimension.class);
+	
+	private static final ConceptDimension INSTANCE = new ConceptDimension();
+	
+	/**
+	 * Minimal time in milliseconds between two checks for changed concepts
+	 */
+	private static final long REFRESH_INTERVAL = 60000;
+	
+	private static final int REFRESH_BATCH_SIZE = 500;
+	
+	private static final String CONCEPTS_SQL = "SELECT c.concept_id, cc.name AS concept_class_name, cd.name AS concept_datatype_name, "
+	        + "cn.name, cn.concept_name_type FROM concept c INNER JOIN concept_class cc ON cc.concept_class_id = c.class_id "
+	        + "INNER JOIN concept_datatype cd ON cd.concept_datatype_id = c.datatype_id "
+	        + "LEFT JOIN concept_name cn ON cn.concept_id = c.concept_id AND cn.locale = 'en' AND cn.voided = 0 "
+	        + "AND (cn.concept_name_type = 'FULLY_SPECIFIED' OR cn.concept_name_type IS NULL)";
+	
+	private static final String CHANGED_CONCEPTS_SQL = "SELECT concept_id FROM concept WHERE date_created >= '%1$s' OR date_changed >= '%1$s' "
+	        + "UNION SELECT concept_id FROM concept_name WHERE date_created >= '%1$s' OR date_voided >= '%1$s'";
+	
+	private final Map<Integer, Concept> concepts = new ConcurrentHashMap<Integer, Concept>();
+	
+	private volatile boolean loaded;
+	
+	private volatile long lastCheck;
+	
+	/**
+	 * Database time of the previous load or refresh, changes made from then on are refreshed
+	 */
+	private String lastRefresh;
+	
+	private ConceptDimension() {
+	}
+	
+	public static ConceptDimension getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Loads the concepts on first use and refreshes the changed ones at most once per
+	 * REFRESH_INTERVAL
+	 *
+	 * @param dataSource the data source of the calling import
+	 */
+	public void refreshIfStale(DataSource<Iterator<Map<String, Object>>> dataSource) {
+		if (loaded && System.currentTimeMillis() - lastCheck < REFRESH_INTERVAL)
+			return;
+		
+		synchronized (this) {
+			if (loaded && System.currentTimeMillis() - lastCheck < REFRESH_INTERVAL)
+				return;
+			
+			String now = getDatabaseTime(dataSource);
+			if (!loaded) {
+				Map<Integer, Concept> all = readConcepts(dataSource, CONCEPTS_SQL);
+				concepts.putAll(all);
+				loaded = true;
+				log.info("Concept dimension loaded with {} concepts", all.size());
+			} else {
+				refresh(dataSource);
+			}
+			lastRefresh = now;
+			lastCheck = System.currentTimeMillis();
+		}
+	}
+	
+	private void refresh(DataSource<Iterator<Map<String, Object>>> dataSource) {
+		List<Integer> changed = new ArrayList<Integer>();
+		Iterator<Map<String, Object>> rows = dataSource.getData(String.format(CHANGED_CONCEPTS_SQL, lastRefresh));
+		while (rows.hasNext()) {
+			changed.add(((Number) rows.next().get("concept_id")).intValue());
+		}
+		
+		for (int from = 0; from < changed.size(); from += REFRESH_BATCH_SIZE) {
+			List<Integer> batch = changed.subList(from, Math.min(from + REFRESH_BATCH_SIZE, changed.size()));
+			Map<Integer, Concept> refreshed = readConcepts(dataSource,
+			    CONCEPTS_SQL + " WHERE c.concept_id IN (" + StringUtils.join(batch, ',') + ")");
+			for (Integer conceptId : batch) {
+				Concept concept = refreshed.get(conceptId);
+				if (concept == null) {
+					concepts.remove(conceptId);
+				} else {
+					concepts.put(conceptId, concept);
+				}
+			}
+		}
+		if (!changed.isEmpty()) {
+			log.info("Concept dimension refreshed {} changed concepts", changed.size());
+		}
+	}
+	
+	private static Map<Integer, Concept> readConcepts(DataSource<Iterator<Map<String, Object>>> dataSource, String sql) {
+		Map<Integer, Concept> read = new HashMap<Integer, Concept>();
+		Iterator<Map<String, Object>> rows = dataSource.getData(sql);
+		while (rows.hasNext()) {
+			Map<String, Object> row = rows.next();
+			Integer conceptId = ((Number) row.get("concept_id")).intValue();
+			Concept concept = read.get(conceptId);
+			if (concept == null) {
+				concept = new Concept((String) row.get("concept_class_name"), (String) row.get("concept_datatype_name"));
+				read.put(conceptId, concept);
+			}
+			
+			String name = (String) row.get("name");
+			if (name == null)
+				continue;
+			if (row.get("concept_name_type") == null) {
+				concept.addSynonym(name);
+			} else {
+				concept.name = name;
+			}
+		}
+		return read;
+	}
+	
+	private static String getDatabaseTime(DataSource<Iterator<Map<String, Object>>> dataSource) {
+		Iterator<Map<String, Object>> rows = dataSource.getData("SELECT NOW() AS now");
+		Date now = null;
+		// reading to the end closes the statement
+		while (rows.hasNext()) {
+			now = (Date) rows.next().get("now");
+		}
+		return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(now);
+	}
+	
+	public Concept getConcept(Object conceptId) {
+		if (!(conceptId instanceof Number))
+			return null;
+		return concepts.get(((Number) conceptId).intValue());
+	}
+	
+	public static class Concept {
+		
+		private final String className;
+		
+		private final String datatypeName;
+		
+		private String name;
+		
+		private String synonyms;
+		
+		private Concept(String className, String datatypeName) {
+			this.className = className;
+			this.datatypeName = datatypeName;
+		}
+		
+		private void addSynonym(String synonym) {
+			synonyms = synonyms == null ? synonym : synonyms + ", " + synonym;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public String getSynonyms() {
+			return synonyms;
+		}
+		
+		public String getClassName() {
+			return className;
+		}
+		
+		public String getDatatypeName() {
+			return datatypeName;
+		}
+	}
+	
+}
@@ -0,0 +1,50 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.solr.handler.dataimport.Context;
+import org.apache.solr.handler.dataimport.DataSource;
+import org.apache.solr.handler.dataimport.DocBuilder;
+import org.apache.solr.handler.dataimport.Transformer;
+import org.apache.solr.handler.dataimport.custom.ConceptDimension.Concept;
+
+/**
+ * Resolves the concept_id and value_coded columns of an obs row through the
+ * {@link ConceptDimension}. Obs of concepts without an English fully specified name are skipped.
+ */
+public class ConceptDimensionTransformer extends Transformer {
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public Object transformRow(Map<String, Object> row, Context context) {
+		ConceptDimension dimension = ConceptDimension.getInstance();
+		dimension.refreshIfStale((DataSource<Iterator<Map<String, Object>>>) context.getDataSource());
+		
+		Concept concept = dimension.getConcept(row.remove("concept_id"));
+		if (concept == null || concept.getName() == null) {
+			row.put(DocBuilder.SKIP_DOC, "true");
+			return row;
+		}
+		row.put("concept_name", concept.getName());
+		row.put("concept_synonym", concept.getSynonyms());
+		row.put("concept_class_name", concept.getClassName());
+		row.put("concept_datatype_facet", concept.getDatatypeName());
+		
+		Concept coded = dimension.getConcept(row.remove("value_coded"));
+		if (coded != null) {
+			row.put("coded", coded.getName());
+		}
+		return row;
+	}
+	
+}
@@ -0,0 +1,66 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completion handle of a single queued import, released by the daemon which processed it
+ */
+public final class ImportTicket {
+	
+	private final long id;
+	
+	private final Integer personId;
+	
+	private final CountDownLatch latch = new CountDownLatch(1);
+	
+	private volatile boolean successful;
+	
+	public ImportTicket(long id, Integer personId) {
+		this.id = id;
+		this.personId = personId;
+	}
+	
+	public long getId() {
+		return id;
+	}
+	
+	public Integer getPersonId() {
+		return personId;
+	}
+	
+	public void complete(boolean successful) {
+		this.successful = successful;
+		latch.countDown();
+	}
+	
+	public boolean isDone() {
+		return latch.getCount() == 0;
+	}
+	
+	public boolean isSuccessful() {
+		return successful;
+	}
+	
+	/**
+	 * @return true if the import finished within the given time
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		return latch.await(timeout, unit);
+	}
+	
+	@Override
+	public String toString() {
+		return "ImportTicket [id=" + id + ", personId=" + personId + ", done=" + isDone() + "]";
+	}
+	
+}
@@ -0,0 +1,69 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the latest import ticket of every patient so searches can wait for their own patient's
+ * data instead of the whole import queue. A ticket which finished without its data being committed
+ * is kept until a search has awaited it, so that search is told its results may be stale.
+ */
+public class ImportTicketRegistry {
+	
+	private final AtomicLong sequence = new AtomicLong();
+	
+	private final ConcurrentMap<Integer, ImportTicket> latestTickets = new ConcurrentHashMap<Integer, ImportTicket>();
+	
+	public ImportTicket newTicket(Integer personId) {
+		ImportTicket ticket = new ImportTicket(sequence.incrementAndGet(), personId);
+		if (personId != null) {
+			latestTickets.put(personId, ticket);
+		}
+		return ticket;
+	}
+	
+	/**
+	 * @return the latest ticket of the patient which is still pending or failed and not awaited
+	 *         yet, null if there is none
+	 */
+	public ImportTicket getLatestTicket(Integer personId) {
+		if (personId == null)
+			return null;
+		
+		ImportTicket ticket = latestTickets.get(personId);
+		if (ticket != null && ticket.isDone() && ticket.isSuccessful()) {
+			latestTickets.remove(personId, ticket);
+			return null;
+		}
+		return ticket;
+	}
+	
+	/**
+	 * Waits for the latest import queued for the patient
+	 *
+	 * @return false if the import is still running after the timeout or it failed, true otherwise
+	 */
+	public boolean await(Integer personId, long timeoutMillis) throws InterruptedException {
+		ImportTicket ticket = getLatestTicket(personId);
+		if (ticket == null)
+			return true;
+		
+		boolean completed = ticket.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		if (completed) {
+			latestTickets.remove(personId, ticket);
+		}
+		return completed && ticket.isSuccessful();
+	}
+	
+}
@@ -10,5 +10,5 @@
 package org.apache.solr.handler.dataimport.custom;
 
 public enum IndexClearStrategies {
-	NO_ACTION, BASIC, NON_USAGE_TIME, IDS
+	NO_ACTION, BASIC, NON_USAGE_TIME, IDS, LEAST_RECENTLY_USED, LEAST_FREQUENTLY_USED, BUDGET
 }
@@ -9,54 +9,18 @@
  */
 package org.apache.solr.handler.dataimport.custom;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedList;
-import java.util.List;
-
-import org.openmrs.module.chartsearch.server.PatientInfo;
-
 /**
  *
  */
-public class IndexClearStrategyBasicImpl implements IndexClearStrategy {
-	
-	private final int maxPatientsInIndex;
+public class IndexClearStrategyBasicImpl extends ScoredIndexClearStrategy {
 	
 	public IndexClearStrategyBasicImpl(int maxPatientsInIndex) {
-		this.maxPatientsInIndex = maxPatientsInIndex;
-		
+		super(maxPatientsInIndex);
 	}
 	
 	@Override
-	public List<Integer> getPatientsToDelete(Collection<PatientInfo> patients) {
-		int deleteCount = patients.size() - maxPatientsInIndex;
-		
-		if (deleteCount <= 0)
-			return Collections.emptyList();
-		
-		List<PatientInfo> sortedPatients = new LinkedList<PatientInfo>(patients);
-		
-		Collections.sort(sortedPatients, new Comparator<PatientInfo>() {
-			
-			@Override
-			public int compare(PatientInfo o1, PatientInfo o2) {
-				return o1.getLastIndexTime().compareTo(o2.getLastIndexTime());
-			}
-			
-		});
-		
-		List<Integer> deletedPatients = new LinkedList<Integer>();
-		
-		for (PatientInfo patientInfo : sortedPatients) {
-			deletedPatients.add(patientInfo.getPatientId());
-			--deleteCount;
-			if (deleteCount == 0)
-				break;
-		}
-		
-		return deletedPatients;
+	protected long score(int patientId, long lastIndexTime) {
+		return lastIndexTime;
 	}
 	
 	@Override
@@ -0,0 +1,189 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the index within a budget of live documents and of bytes on disk, whichever is exceeded
+ * more. The patients are deleted least recently used first until their documents cover the
+ * excess. Live document counts are read per patient from the person_id and patient_id postings,
+ * the bytes of the live documents are estimated from the size of the index directory. Global
+ * documents such as forms are not counted against the budget.
+ */
+public class IndexClearStrategyBudgetImpl implements IndexClearStrategy {
+	
+	private static final Logger log = LoggerFactory.getLogger(IndexClearStrategyBudgetImpl.class);
+	
+	private static final String[] PATIENT_FIELDS = { "person_id", "patient_id" };
+	
+	private final SolrCore core;
+	
+	private final long maxDocuments;
+	
+	private final long maxBytes;
+	
+	private final PatientAccessTracker accessTracker;
+	
+	/**
+	 * @param maxDocuments maximal number of live documents, 0 for no limit
+	 * @param maxBytes maximal index size in bytes, 0 for no limit
+	 */
+	public IndexClearStrategyBudgetImpl(SolrCore core, long maxDocuments, long maxBytes,
+	                                    PatientAccessTracker accessTracker) {
+		this.core = core;
+		this.maxDocuments = maxDocuments;
+		this.maxBytes = maxBytes;
+		this.accessTracker = accessTracker;
+	}
+	
+	@Override
+	public List<Integer> getPatientsToDelete(PatientInfoEntries patients) {
+		final IntLongHashMap documents = new IntLongHashMap();
+		long excess;
+		RefCounted<SolrIndexSearcher> searcher = core.getSearcher();
+		try {
+			DirectoryReader reader = searcher.get().getIndexReader();
+			long patientDocuments = 0;
+			for (String field : PATIENT_FIELDS) {
+				patientDocuments += countDocuments(reader, field, documents);
+			}
+			excess = getExcessDocuments(reader, patientDocuments);
+		}
+		catch (IOException e) {
+			log.error("Error reading the index size", e);
+			return Collections.emptyList();
+		}
+		finally {
+			searcher.decref();
+		}
+		if (excess <= 0)
+			return Collections.emptyList();
+		
+		final List<long[]> candidates = new ArrayList<long[]>(patients.size());
+		patients.forEach(new PatientInfoVisitor() {
+			
+			@Override
+			public void visit(int patientId, long lastIndexTime) {
+				long lastUse = Math.max(accessTracker.getLastAccessTime(patientId), lastIndexTime);
+				candidates.add(new long[] { patientId, lastUse });
+			}
+		});
+		long[][] sorted = candidates.toArray(new long[candidates.size()][]);
+		Arrays.sort(sorted, new Comparator<long[]>() {
+			
+			@Override
+			public int compare(long[] o1, long[] o2) {
+				return o1[1] < o2[1] ? -1 : (o1[1] == o2[1] ? 0 : 1);
+			}
+		});
+		
+		List<Integer> deletedPatients = new ArrayList<Integer>();
+		for (int i = 0; i < sorted.length && excess > 0; i++) {
+			int patientId = (int) sorted[i][0];
+			deletedPatients.add(patientId);
+			excess -= documents.get(patientId, 0);
+		}
+		return deletedPatients;
+	}
+	
+	/**
+	 * Counts the live documents of every patient, deleted documents still hold their terms until
+	 * they are merged away
+	 * 
+	 * @return the number of live documents counted
+	 */
+	private static long countDocuments(DirectoryReader reader, String field, IntLongHashMap documents)
+	    throws IOException {
+		Terms terms = MultiFields.getTerms(reader, field);
+		if (terms == null)
+			return 0;
+		Bits liveDocs = MultiFields.getLiveDocs(reader);
+		TermsEnum termsEnum = terms.iterator(null);
+		DocsEnum docsEnum = null;
+		long total = 0;
+		BytesRef term;
+		while ((term = termsEnum.next()) != null) {
+			// trie fields with a precision step also index lower precision terms
+			if (NumericUtils.getPrefixCodedIntShift(term) != 0)
+				continue;
+			int patientId = NumericUtils.prefixCodedToInt(term);
+			docsEnum = termsEnum.docs(liveDocs, docsEnum, DocsEnum.FLAG_NONE);
+			int count = 0;
+			while (docsEnum.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+				count++;
+			}
+			if (count > 0) {
+				documents.put(patientId, documents.get(patientId, 0) + count);
+				total += count;
+			}
+		}
+		return total;
+	}
+	
+	/**
+	 * The global documents, e.g. forms, can not be pruned and are left out of the budget
+	 * 
+	 * @return the number of live patient documents over the document or size budget
+	 */
+	private long getExcessDocuments(DirectoryReader reader, long patientDocuments) throws IOException {
+		long excess = maxDocuments > 0 ? patientDocuments - maxDocuments : 0;
+		if (maxBytes > 0 && reader.maxDoc() > 0) {
+			long bytes = getDirectorySize(reader.directory());
+			// deleted documents keep their bytes until merged away
+			double bytesPerDocument = (double) bytes / reader.maxDoc();
+			long liveBytes = (long) (bytesPerDocument * patientDocuments);
+			if (liveBytes > maxBytes) {
+				excess = Math.max(excess, (long) Math.ceil((liveBytes - maxBytes) / bytesPerDocument));
+			}
+		}
+		return excess;
+	}
+	
+	private static long getDirectorySize(Directory directory) throws IOException {
+		long size = 0;
+		for (String file : directory.listAll()) {
+			try {
+				size += directory.fileLength(file);
+			}
+			catch (IOException e) {
+				// removed by a merge meanwhile
+			}
+		}
+		return size;
+	}
+	
+	@Override
+	public String toString() {
+		return "Index Budget Clear Strategy";
+	}
+	
+}
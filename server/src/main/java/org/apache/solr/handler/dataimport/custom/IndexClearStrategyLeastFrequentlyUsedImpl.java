@@ -0,0 +1,46 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+/**
+ * Deletes the patients searched least often recently, among equally often searched patients the
+ * least recently used ones
+ */
+public class IndexClearStrategyLeastFrequentlyUsedImpl extends ScoredIndexClearStrategy {
+	
+	private static final int TIME_BITS = 43;
+	
+	private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+	
+	private static final int MAX_FREQUENCY = (1 << (62 - TIME_BITS)) - 1;
+	
+	private final PatientAccessTracker accessTracker;
+	
+	public IndexClearStrategyLeastFrequentlyUsedImpl(int maxPatientsInIndex, PatientAccessTracker accessTracker) {
+		super(maxPatientsInIndex);
+		this.accessTracker = accessTracker;
+	}
+	
+	/**
+	 * The frequency fills the high bits, the last use time in milliseconds the low 43 bits
+	 */
+	@Override
+	protected long score(int patientId, long lastIndexTime) {
+		long frequency = Math.min(accessTracker.getFrequency(patientId), MAX_FREQUENCY);
+		long lastUse = Math.max(accessTracker.getLastAccessTime(patientId), lastIndexTime);
+		return (frequency << TIME_BITS) | (lastUse & TIME_MASK);
+	}
+	
+	@Override
+	public String toString() {
+		return "Least Frequently Used Index Clear Strategy";
+	}
+	
+}
@@ -0,0 +1,34 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+/**
+ * Deletes the patients which were neither searched nor indexed for the longest time
+ */
+public class IndexClearStrategyLeastRecentlyUsedImpl extends ScoredIndexClearStrategy {
+	
+	private final PatientAccessTracker accessTracker;
+	
+	public IndexClearStrategyLeastRecentlyUsedImpl(int maxPatientsInIndex, PatientAccessTracker accessTracker) {
+		super(maxPatientsInIndex);
+		this.accessTracker = accessTracker;
+	}
+	
+	@Override
+	protected long score(int patientId, long lastIndexTime) {
+		return Math.max(accessTracker.getLastAccessTime(patientId), lastIndexTime);
+	}
+	
+	@Override
+	public String toString() {
+		return "Least Recently Used Index Clear Strategy";
+	}
+	
+}
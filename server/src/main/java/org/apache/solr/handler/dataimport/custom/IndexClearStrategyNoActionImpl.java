@@ -9,19 +9,16 @@
  */
 package org.apache.solr.handler.dataimport.custom;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
-import org.openmrs.module.chartsearch.server.PatientInfo;
-
 /**
  *
  */
 public class IndexClearStrategyNoActionImpl implements IndexClearStrategy {
 	
 	@Override
-	public List<Integer> getPatientsToDelete(Collection<PatientInfo> patients) {
+	public List<Integer> getPatientsToDelete(PatientInfoEntries patients) {
 		return Collections.emptyList();
 	}
 	
@@ -9,13 +9,9 @@
  */
 package org.apache.solr.handler.dataimport.custom;
 
-import java.util.Collection;
-import java.util.Date;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
-import org.openmrs.module.chartsearch.server.PatientInfo;
-
 public class IndexClearStrategyNonUsageTimeImpl implements IndexClearStrategy {
 	
 	private final int nonUsageMaxTime;
@@ -26,16 +22,19 @@ public class IndexClearStrategyNonUsageTimeImpl implements IndexClearStrategy {
 	}
 	
 	@Override
-	public List<Integer> getPatientsToDelete(Collection<PatientInfo> patients) {
-		long nonUsageMaxStartTime = new Date().getTime() - (nonUsageMaxTime * 1000);
-		Date nonUsageMaxStartDate = new Date(nonUsageMaxStartTime);
+	public List<Integer> getPatientsToDelete(PatientInfoEntries patients) {
+		final long nonUsageMaxStartTime = System.currentTimeMillis() - (nonUsageMaxTime * 1000L);
 		
-		List<Integer> deletedPatients = new LinkedList<Integer>();
-		for (PatientInfo patientInfo : patients) {
-			if (patientInfo.getLastIndexTime().before(nonUsageMaxStartDate)) {
-				deletedPatients.add(patientInfo.getPatientId());
+		final List<Integer> deletedPatients = new ArrayList<Integer>();
+		patients.forEach(new PatientInfoVisitor() {
+			
+			@Override
+			public void visit(int patientId, long lastIndexTime) {
+				if (lastIndexTime < nonUsageMaxStartTime) {
+					deletedPatients.add(patientId);
+				}
 			}
-		}
+		});
 		return deletedPatients;
 	}
 	
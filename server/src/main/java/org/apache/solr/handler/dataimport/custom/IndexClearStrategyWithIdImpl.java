@@ -9,11 +9,8 @@
  */
 package org.apache.solr.handler.dataimport.custom;
 
-import java.util.Collection;
 import java.util.List;
 
-import org.openmrs.module.chartsearch.server.PatientInfo;
-
 /**
  * This clear strategy uses only on force prunes via commands
  */
@@ -26,7 +23,7 @@ public class IndexClearStrategyWithIdImpl implements IndexClearStrategy {
 	}
 	
 	@Override
-	public List<Integer> getPatientsToDelete(Collection<PatientInfo> patients) {
+	public List<Integer> getPatientsToDelete(PatientInfoEntries patients) {
 		return ids;
 	}
 	
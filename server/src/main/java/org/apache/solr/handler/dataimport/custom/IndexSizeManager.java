@@ -10,111 +10,123 @@
 package org.apache.solr.handler.dataimport.custom;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.solr.common.params.MapSolrParams;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.SolrQueryRequestBase;
-import org.apache.solr.update.CommitUpdateCommand;
 import org.apache.solr.update.DeleteUpdateCommand;
 import org.apache.solr.update.UpdateHandler;
-import org.openmrs.module.chartsearch.server.PatientInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Prunes the patients chosen by an {@link IndexClearStrategy} from the index, pinned patients are
+ * not offered to the strategy. Patients are deleted in batches with one query each and committed
+ * once, the cache is not locked while deleting.
  */
 public class IndexSizeManager {
 	
 	private static Logger log = LoggerFactory.getLogger(IndexSizeManager.class);
 	
+	/**
+	 * Patients deleted by one query, each adds two clauses which must stay below maxBooleanClauses
+	 */
+	private static final int DELETE_BATCH_SIZE = 500;
+	
 	private final UpdateHandler handler;
 	
 	private final SolrQueryRequest req;
 	
 	private final PatientInfoCache cache;
 	
+	private final CommitCoalescer commitCoalescer;
+	
+	private final PrewarmedPatients prewarmedPatients;
+	
 	private IndexClearStrategy strategy;
 	
-	private int clearedPatientsCount = 0;
+	private volatile int clearedPatientsCount = 0;
 	
-	public IndexSizeManager(SolrCore core, PatientInfoCache cache, IndexClearStrategy strategy) {
+	private volatile long pruneTime = 0;
+	
+	private volatile long pruneStallTime = 0;
+	
+	public IndexSizeManager(SolrCore core, PatientInfoCache cache, IndexClearStrategy strategy,
+	                        CommitCoalescer commitCoalescer, PrewarmedPatients prewarmedPatients) {
 		this.strategy = strategy;
 		this.handler = core.getUpdateHandler();
 		
 		this.req = new SolrQueryRequestBase(
 		                                    core, new MapSolrParams(new HashMap<String, String>())) {};
 		this.cache = cache;
+		this.commitCoalescer = commitCoalescer;
+		this.prewarmedPatients = prewarmedPatients;
 	}
 	
 	public void setIndexClearStrategy(IndexClearStrategy strategy) {
 		this.strategy = strategy;
 	}
 	
-	public int clearIndex(IndexClearStrategy strategy) {
-		synchronized (cache) {
-			int pruneCount = 0;
-			
-			Map<Integer, PatientInfo> map = cache.getAll();
-			List<PatientInfo> patients = new LinkedList<PatientInfo>(map.values());
-			
-			List<Integer> deletePatients = strategy.getPatientsToDelete(patients);
-			
-			if (deletePatients.size() == 0) {
-				log.info("Nothing to clear");
-				return 0;
-			}
-			
-			CommitUpdateCommand commitCmd = new CommitUpdateCommand(req, true);
-			
-			for (Integer id : deletePatients) {
-				DeleteUpdateCommand delCmd = new DeleteUpdateCommand(req);
-				delCmd.query = String.format("person_id:%d", id);
-				
-				deletePatient(id, delCmd);
-				
-				//Increment by one instead of adding deletePatients.size()
-				//in case of some troubleshoots (don't know what troubleshoots)
-				//TODO refactor
-				pruneCount++;
-				clearedPatientsCount++;
+	public synchronized int clearIndex(IndexClearStrategy strategy) {
+		long start = System.currentTimeMillis();
+		long lockWaitStart = cache.getLockWaitTime();
+		prewarmedPatients.removeExpired();
+		List<Integer> deletePatients = strategy.getPatientsToDelete(prewarmedPatients.withoutPinned(cache));
+		
+		if (deletePatients.size() == 0) {
+			log.info("Nothing to clear");
+			return 0;
+		}
+		
+		List<Integer> deleted = new ArrayList<Integer>(deletePatients.size());
+		for (int from = 0; from < deletePatients.size(); from += DELETE_BATCH_SIZE) {
+			List<Integer> batch = deletePatients.subList(from, Math.min(from + DELETE_BATCH_SIZE, deletePatients.size()));
+			if (deletePatients(batch)) {
+				deleted.addAll(batch);
 			}
-			commitChanges(commitCmd);
-			
-			cache.save();
-			
-			log.info("Index cleared, deleted {} patients, {} patients left in the index", pruneCount, cache.size());
-			
-			return pruneCount;
-			
 		}
+		if (deleted.isEmpty())
+			return 0;
+		
+		commitCoalescer.requestCommit();
+		cache.removeAll(deleted);
+		if (!cache.save()) {
+			log.warn("The pruned patients could not be saved, retrying on the next update");
+		}
+		
+		int pruneCount = deleted.size();
+		clearedPatientsCount += pruneCount;
+		long time = System.currentTimeMillis() - start;
+		pruneTime += time;
+		long stallTime = TimeUnit.NANOSECONDS.toMillis(cache.getLockWaitTime() - lockWaitStart);
+		pruneStallTime += stallTime;
+		log.info("Index cleared, deleted {} patients in {} ms, import daemons waited {} ms for the cache, {} patients "
+		        + "left in the index", new Object[] { pruneCount, time, stallTime, cache.size() });
+		
+		return pruneCount;
 	}
 	
 	public void clearIndex() {
 		clearIndex(strategy);
 	}
 	
-	private void deletePatient(int id, DeleteUpdateCommand delCmd) {
+	private boolean deletePatients(List<Integer> ids) {
+		String idList = StringUtils.join(ids, ' ');
+		DeleteUpdateCommand delCmd = new DeleteUpdateCommand(req);
+		delCmd.query = String.format("person_id:(%1$s) OR patient_id:(%1$s)", idList);
 		try {
 			handler.deleteByQuery(delCmd);
-			cache.remove(id);
-		}
-		catch (IOException e) {
-			log.error("Error generated", e);
-		}
-	}
-	
-	private void commitChanges(CommitUpdateCommand commitCmd) {
-		try {
-			handler.commit(commitCmd);
+			return true;
 		}
 		catch (IOException e) {
 			log.error("Error generated", e);
+			return false;
 		}
 	}
 	
@@ -122,4 +134,21 @@ public class IndexSizeManager {
 		return clearedPatientsCount;
 	}
 	
+	/**
+	 * @return total milliseconds spent pruning, together with the cleared patients count it gives
+	 *         the prune throughput
+	 */
+	public long getPruneTime() {
+		return pruneTime;
+	}
+	
+	/**
+	 * @return total milliseconds the import daemons waited for the patient cache while pruning.
+	 *         Pruning used to hold the cache for its whole duration, so the prune time was also the
+	 *         daemons' stall time.
+	 */
+	public long getPruneStallTime() {
+		return pruneStallTime;
+	}
+	
 }
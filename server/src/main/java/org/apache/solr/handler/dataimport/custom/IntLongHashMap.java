@@ -0,0 +1,195 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from int to long with linear probing, holding no boxed keys or values.
+ * Not thread safe.
+ */
+public class IntLongHashMap implements PatientInfoEntries {
+	
+	private static final int EMPTY = 0;
+	
+	private static final int MIN_CAPACITY = 16;
+	
+	private int[] keys;
+	
+	private long[] values;
+	
+	private int mask;
+	
+	private int resizeAt;
+	
+	private int size;
+	
+	/**
+	 * The empty slot marker can not be a key of the table
+	 */
+	private boolean hasZeroKey;
+	
+	private long zeroValue;
+	
+	public IntLongHashMap() {
+		this(MIN_CAPACITY);
+	}
+	
+	public IntLongHashMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 / 4 < expectedSize) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+	
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+		resizeAt = capacity * 3 / 4;
+	}
+	
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+	
+	/**
+	 * @return the value of the key, missingValue if it is not in the map
+	 */
+	public long get(int key, long missingValue) {
+		if (key == EMPTY)
+			return hasZeroKey ? zeroValue : missingValue;
+		
+		for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return values[i];
+		}
+		return missingValue;
+	}
+	
+	public boolean containsKey(int key) {
+		if (key == EMPTY)
+			return hasZeroKey;
+		
+		for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return true if the key was not in the map before
+	 */
+	public boolean put(int key, long value) {
+		if (key == EMPTY) {
+			boolean added = !hasZeroKey;
+			hasZeroKey = true;
+			zeroValue = value;
+			if (added)
+				size++;
+			return added;
+		}
+		
+		int i = slot(key);
+		for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return false;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > resizeAt) {
+			rehash();
+		}
+		return true;
+	}
+	
+	/**
+	 * @return true if the key was in the map
+	 */
+	public boolean remove(int key) {
+		if (key == EMPTY) {
+			boolean removed = hasZeroKey;
+			hasZeroKey = false;
+			if (removed)
+				size--;
+			return removed;
+		}
+		
+		for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				shiftBack(i);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Fills the freed slot with the following entries of its probe sequence, so lookups never stop
+	 * at a hole
+	 */
+	private void shiftBack(int gap) {
+		for (int i = (gap + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+			int ideal = slot(keys[i]);
+			if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		keys[gap] = EMPTY;
+	}
+	
+	private void rehash() {
+		int[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(keys.length << 1);
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] == EMPTY)
+				continue;
+			int i = slot(oldKeys[j]);
+			while (keys[i] != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+	
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		hasZeroKey = false;
+		size = 0;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public void forEach(PatientInfoVisitor visitor) {
+		if (hasZeroKey) {
+			visitor.visit(EMPTY, zeroValue);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				visitor.visit(keys[i], values[i]);
+			}
+		}
+	}
+	
+}
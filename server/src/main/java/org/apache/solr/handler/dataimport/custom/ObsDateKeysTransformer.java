@@ -0,0 +1,34 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.apache.solr.handler.dataimport.Context;
+import org.apache.solr.handler.dataimport.Transformer;
+import org.openmrs.module.chartsearch.server.ObsDateKeys;
+
+/**
+ * Adds the UTC year, month and day keys of the obs_datetime column, see {@link ObsDateKeys}. They
+ * are taken from the same value Solr indexes, whatever zone the database session is in.
+ */
+public class ObsDateKeysTransformer extends Transformer {
+	
+	@Override
+	public Object transformRow(Map<String, Object> row, Context context) {
+		Object obsDatetime = row.get("obs_datetime");
+		if (obsDatetime instanceof Date) {
+			row.putAll(ObsDateKeys.getKeys((Date) obsDatetime));
+		}
+		return row;
+	}
+	
+}
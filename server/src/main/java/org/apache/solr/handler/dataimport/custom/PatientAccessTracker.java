@@ -0,0 +1,115 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the searches of every patient. The counts are halved once per {@link #AGING_SAMPLE}
+ * searches so that the frequencies follow the recent usage, patients whose count drops to zero are
+ * forgotten. A search is a hit if the patient was still in the index.
+ */
+public class PatientAccessTracker {
+	
+	/**
+	 * Number of searches after which all counts are halved
+	 */
+	private static final int AGING_SAMPLE = 10000;
+	
+	private final ConcurrentHashMap<Integer, Access> accesses = new ConcurrentHashMap<Integer, Access>();
+	
+	private final AtomicInteger sinceAging = new AtomicInteger();
+	
+	private final AtomicLong accessCount = new AtomicLong();
+	
+	private final AtomicLong hitCount = new AtomicLong();
+	
+	/**
+	 * @param indexed whether the patient was in the index when searched
+	 */
+	public void recordAccess(int patientId, boolean indexed) {
+		Access access = accesses.get(patientId);
+		if (access == null) {
+			access = new Access();
+			Access previous = accesses.putIfAbsent(patientId, access);
+			if (previous != null) {
+				access = previous;
+			}
+		}
+		access.count.incrementAndGet();
+		access.lastAccessTime = System.currentTimeMillis();
+		
+		accessCount.incrementAndGet();
+		if (indexed) {
+			hitCount.incrementAndGet();
+		}
+		if (sinceAging.incrementAndGet() >= AGING_SAMPLE) {
+			sinceAging.set(0);
+			age();
+		}
+	}
+	
+	private void age() {
+		Iterator<Access> iterator = accesses.values().iterator();
+		while (iterator.hasNext()) {
+			Access access = iterator.next();
+			int count;
+			do {
+				count = access.count.get();
+			} while (!access.count.compareAndSet(count, count / 2));
+			if (count / 2 == 0) {
+				iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * @return the aged search count of the patient
+	 */
+	public int getFrequency(int patientId) {
+		Access access = accesses.get(patientId);
+		return access == null ? 0 : access.count.get();
+	}
+	
+	/**
+	 * @return time of the last search of the patient in milliseconds, 0 if not searched recently
+	 */
+	public long getLastAccessTime(int patientId) {
+		Access access = accesses.get(patientId);
+		return access == null ? 0 : access.lastAccessTime;
+	}
+	
+	public long getAccessCount() {
+		return accessCount.get();
+	}
+	
+	public long getHitCount() {
+		return hitCount.get();
+	}
+	
+	/**
+	 * @return share of the searches which found the patient in the index, 0 before any search
+	 */
+	public double getHitRatio() {
+		long accesses = accessCount.get();
+		return accesses == 0 ? 0 : (double) hitCount.get() / accesses;
+	}
+	
+	private static class Access {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		private volatile long lastAccessTime;
+	}
+	
+}
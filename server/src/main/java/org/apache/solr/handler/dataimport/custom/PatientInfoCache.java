@@ -9,63 +9,200 @@
  */
 package org.apache.solr.handler.dataimport.custom;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.openmrs.module.chartsearch.server.PatientInfo;
-
-public class PatientInfoCache {
+/**
+ * Last index time of every indexed patient. The patients are spread over stripes, each a primitive
+ * map with its own lock, so the import daemons, the pruner and the saver rarely wait for each
+ * other. The changes since the last save are kept per stripe as well.
+ */
+public class PatientInfoCache implements PatientInfoEntries {
 	
-	private Map<Integer, PatientInfo> data = new ConcurrentHashMap<Integer, PatientInfo>();
+	/**
+	 * Last index time of a patient which is not indexed
+	 */
+	public static final long REMOVED = -1;
 	
-	private final PatientInfoProvider source;
+	private static final int STRIPES = 16;
+	
+	private final IntLongHashMap[] stripes = new IntLongHashMap[STRIPES];
+	
+	/**
+	 * Per stripe, the patients changed since the last save with their new time or REMOVED. Guarded
+	 * by the lock of the stripe.
+	 */
+	private final IntLongHashMap[] changes = new IntLongHashMap[STRIPES];
+	
+	private final AtomicInteger size = new AtomicInteger();
 	
-	private boolean isDirty;
+	private final AtomicBoolean dirty = new AtomicBoolean();
+	
+	/**
+	 * Time the import daemons waited for a stripe lock, in nanoseconds
+	 */
+	private final AtomicLong lockWaitTime = new AtomicLong();
+	
+	private final PatientInfoProvider source;
 	
 	public PatientInfoCache(PatientInfoProvider source) {
 		this.source = source;
-		update();
-		isDirty = false;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new IntLongHashMap();
+			changes[i] = new IntLongHashMap();
+		}
+		load();
 	}
 	
-	public synchronized void update() {
-		Map<Integer, PatientInfo> tempData = source.getData();
-		if (tempData != null) {
-			data = new ConcurrentHashMap<Integer, PatientInfo>(tempData);
-		}
+	private void load() {
+		source.readData(new PatientInfoVisitor() {
+			
+			@Override
+			public void visit(int patientId, long lastIndexTime) {
+				IntLongHashMap stripe = stripes[stripe(patientId)];
+				synchronized (stripe) {
+					if (lastIndexTime == REMOVED) {
+						if (stripe.remove(patientId))
+							size.decrementAndGet();
+					} else if (stripe.put(patientId, lastIndexTime)) {
+						size.incrementAndGet();
+					}
+				}
+			}
+		});
+	}
+	
+	private static int stripe(int patientId) {
+		return (patientId ^ (patientId >>> 16)) & (STRIPES - 1);
 	}
 	
-	public synchronized void save() {
-		if (isDirty) {
-			source.updateData(data.values());
-			isDirty = false;
+	/**
+	 * Hands the changes since the previous save over to the provider. If the provider fails they
+	 * are kept for the next save, unless the patient has changed again in the meantime.
+	 * 
+	 * @return false if the changes could not be saved
+	 */
+	public synchronized boolean save() {
+		if (!dirty.getAndSet(false))
+			return true;
+		
+		IntLongHashMap[] drained = new IntLongHashMap[STRIPES];
+		IntLongHashMap changed = new IntLongHashMap();
+		for (int i = 0; i < STRIPES; i++) {
+			synchronized (stripes[i]) {
+				drained[i] = changes[i];
+				changes[i] = new IntLongHashMap();
+			}
+			copy(drained[i], changed);
 		}
+		if (changed.size() == 0 || source.updateData(this, changed))
+			return true;
+		
+		for (int i = 0; i < STRIPES; i++) {
+			synchronized (stripes[i]) {
+				IntLongHashMap newer = changes[i];
+				changes[i] = drained[i];
+				copy(newer, drained[i]);
+			}
+		}
+		dirty.set(true);
+		return false;
 	}
 	
-	public synchronized Map<Integer, PatientInfo> getAll() {
-		return new HashMap<Integer, PatientInfo>(data);
+	private static void copy(IntLongHashMap from, final IntLongHashMap to) {
+		from.forEach(new PatientInfoVisitor() {
+			
+			@Override
+			public void visit(int patientId, long lastIndexTime) {
+				to.put(patientId, lastIndexTime);
+			}
+		});
 	}
 	
-	public synchronized PatientInfo get(Integer patientId) {
-		return data.get(patientId);
+	/**
+	 * @return the last index time of the patient, {@link #REMOVED} if it is not indexed
+	 */
+	public long getLastIndexTime(int patientId) {
+		IntLongHashMap stripe = stripes[stripe(patientId)];
+		long start = System.nanoTime();
+		synchronized (stripe) {
+			lockWaitTime.addAndGet(System.nanoTime() - start);
+			return stripe.get(patientId, REMOVED);
+		}
 	}
 	
-	public synchronized void put(Integer patientId, PatientInfo patientInfo) {
-		data.put(patientId, patientInfo);
-		isDirty = true;
+	public void put(int patientId, long lastIndexTime) {
+		int i = stripe(patientId);
+		long start = System.nanoTime();
+		synchronized (stripes[i]) {
+			lockWaitTime.addAndGet(System.nanoTime() - start);
+			if (stripes[i].put(patientId, lastIndexTime))
+				size.incrementAndGet();
+			changes[i].put(patientId, lastIndexTime);
+		}
+		dirty.set(true);
 	}
 	
-	public synchronized Boolean contains(Integer patientId) {
-		return data.containsKey(patientId);
+	public boolean contains(int patientId) {
+		IntLongHashMap stripe = stripes[stripe(patientId)];
+		synchronized (stripe) {
+			return stripe.containsKey(patientId);
+		}
 	}
 	
-	public synchronized void remove(Integer patientId) {
-		data.remove(patientId);
-		isDirty = true;
+	public void remove(int patientId) {
+		int i = stripe(patientId);
+		synchronized (stripes[i]) {
+			if (stripes[i].remove(patientId))
+				size.decrementAndGet();
+			changes[i].put(patientId, REMOVED);
+		}
+		dirty.set(true);
 	}
 	
+	/**
+	 * Removes the patients taking the lock of each stripe once
+	 */
+	public void removeAll(Collection<Integer> patientIds) {
+		for (int i = 0; i < STRIPES; i++) {
+			synchronized (stripes[i]) {
+				for (Integer patientId : patientIds) {
+					if (stripe(patientId) != i)
+						continue;
+					if (stripes[i].remove(patientId))
+						size.decrementAndGet();
+					changes[i].put(patientId, REMOVED);
+				}
+			}
+		}
+		dirty.set(true);
+	}
+	
+	@Override
 	public int size() {
-		return data.size();
+		return size.get();
+	}
+	
+	/**
+	 * @return nanoseconds the import daemons waited for the cache while reading and setting last
+	 *         index times
+	 */
+	public long getLockWaitTime() {
+		return lockWaitTime.get();
+	}
+	
+	/**
+	 * Visits one stripe at a time holding its lock, so nothing is copied and only the patients of
+	 * the visited stripe wait. The visitor must not call back into the cache.
+	 */
+	@Override
+	public void forEach(PatientInfoVisitor visitor) {
+		for (IntLongHashMap stripe : stripes) {
+			synchronized (stripe) {
+				stripe.forEach(visitor);
+			}
+		}
 	}
 }
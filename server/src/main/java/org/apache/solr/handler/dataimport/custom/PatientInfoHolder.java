@@ -12,7 +12,6 @@ package org.apache.solr.handler.dataimport.custom;
 import java.util.Calendar;
 import java.util.Date;
 
-import org.openmrs.module.chartsearch.server.PatientInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,8 +29,9 @@ public class PatientInfoHolder {
 	}
 	
 	public Date getLastIndexTime(int patientId) {
-		if (cache.contains(patientId)) {
-			return cache.get(patientId).getLastIndexTime();
+		long lastIndexTime = cache.getLastIndexTime(patientId);
+		if (lastIndexTime != PatientInfoCache.REMOVED) {
+			return new Date(lastIndexTime);
 		} else {
 			return null;
 		}
@@ -39,7 +39,7 @@ public class PatientInfoHolder {
 	
 	public void setLastIndexTime(int patientId) {
 		Date lastIndexTime = Calendar.getInstance().getTime();
-		cache.put(patientId, new PatientInfo(patientId, lastIndexTime));
+		cache.put(patientId, lastIndexTime.getTime());
 		log.info("Set last index time to: {}", lastIndexTime);
 	}
 	
@@ -9,18 +9,25 @@
  */
 package org.apache.solr.handler.dataimport.custom;
 
-import java.util.Collection;
-import java.util.Map;
-
-import org.openmrs.module.chartsearch.server.PatientInfo;
-
 /**
- *
+ * Storage of the {@link PatientInfoCache}
  */
 public interface PatientInfoProvider {
 	
-	public Map<Integer, PatientInfo> getData();
+	/**
+	 * Passes the stored patients to the visitor, a last index time of
+	 * {@link PatientInfoCache#REMOVED} removes a patient passed before
+	 */
+	public void readData(PatientInfoVisitor visitor);
 	
-	public void updateData(Collection<PatientInfo> data);
+	/**
+	 * Persists the patient information
+	 * 
+	 * @param data all current entries
+	 * @param changes patients added, updated or removed since the previous update, removed ones with
+	 *            {@link PatientInfoCache#REMOVED}
+	 * @return false if the changes could not be persisted and have to be passed again
+	 */
+	public boolean updateData(PatientInfoEntries data, PatientInfoEntries changes);
 	
 }
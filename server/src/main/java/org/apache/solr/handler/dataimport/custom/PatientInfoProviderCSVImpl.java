@@ -13,12 +13,12 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.solr.handler.dataimport.DataImportHandler;
-import org.openmrs.module.chartsearch.server.PatientInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.supercsv.cellprocessor.constraint.NotNull;
@@ -45,10 +45,10 @@ public class PatientInfoProviderCSVImpl implements PatientInfoProvider {
 	}
 	
 	/**
-	 * @see org.apache.solr.handler.dataimport.custom.PatientInfoProvider#getData()
+	 * @see org.apache.solr.handler.dataimport.custom.PatientInfoProvider#readData(org.apache.solr.handler.dataimport.custom.PatientInfoVisitor)
 	 */
 	@Override
-	public Map<Integer, PatientInfo> getData() {
+	public void readData(PatientInfoVisitor visitor) {
 		ICsvMapReader mapReader = null;
 		try {
 			try {
@@ -56,21 +56,20 @@ public class PatientInfoProviderCSVImpl implements PatientInfoProvider {
 				// the header elements are used to map the values to the bean (names must match)
 				final String[] header = mapReader.getHeader(true);
 				if (header == null)
-					return null;
+					return;
 				final CellProcessor[] processors = getProcessors();
 				
-				Map<Integer, PatientInfo> data = new HashMap<Integer, PatientInfo>();
-				PatientInfo patientInfo;
+				int count = 0;
 				Map<String, Object> map;
 				while ((map = mapReader.read(header, processors)) != null) {
-					Integer patientId = Integer.parseInt((String) map.get("patientId"));
-					Long time = Long.parseLong((String) map.get("lastIndexTime"));
-					patientInfo = new PatientInfo(patientId, time);
-					data.put(patientInfo.getPatientId(), patientInfo);
+					int patientId = Integer.parseInt((String) map.get("patientId"));
+					long time = Long.parseLong((String) map.get("lastIndexTime"));
+					visitor.visit(patientId, time);
+					count++;
 				}
 				
-				log.info("Returned {} entries", data.size());
-				return data;
+				log.info("Returned {} entries", count);
+				return;
 				
 			}
 			catch (FileNotFoundException e) {
@@ -93,40 +92,51 @@ public class PatientInfoProviderCSVImpl implements PatientInfoProvider {
 		}
 		
 		log.info("Returned 0 entries");
-		return new HashMap<Integer, PatientInfo>();
 		
 	}
 	
 	/**
-	 * @see org.apache.solr.handler.dataimport.custom.PatientInfoProvider#updateData(java.util.Map)
+	 * Rewrites the whole file, the changes are not used
+	 * 
+	 * @see org.apache.solr.handler.dataimport.custom.PatientInfoProvider#updateData(org.apache.solr.handler.dataimport.custom.PatientInfoEntries,
+	 *      org.apache.solr.handler.dataimport.custom.PatientInfoEntries)
 	 */
 	@Override
-	public void updateData(Collection<PatientInfo> data) {
+	public boolean updateData(PatientInfoEntries data, PatientInfoEntries changes) {
+		
+		// the header elements are used to map the bean values to each column (names must match)
+		final String[] header = new String[] { "patientId", "lastIndexTime" };
+		final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(data.size());
+		data.forEach(new PatientInfoVisitor() {
+			
+			@Override
+			public void visit(int patientId, long lastIndexTime) {
+				Map<String, Object> info = new HashMap<String, Object>();
+				info.put(header[0], patientId);
+				info.put(header[1], lastIndexTime);
+				rows.add(info);
+			}
+		});
 		
 		ICsvMapWriter mapWriter = null;
 		try {
 			mapWriter = new CsvMapWriter(new FileWriter(fileName), CsvPreference.STANDARD_PREFERENCE);
 			
-			// the header elements are used to map the bean values to each column (names must match)
-			final String[] header = new String[] { "patientId", "lastIndexTime" };
 			final CellProcessor[] processors = getProcessors();
 			
 			// write the header
 			mapWriter.writeHeader(header);
 			
 			// write the beans
-			for (final PatientInfo patientInfo : data) {
-				final Map<String, Object> info = new HashMap<String, Object>();
-				info.put(header[0], patientInfo.getPatientId());
-				info.put(header[1], patientInfo.getLastIndexTime().getTime());
+			for (Map<String, Object> info : rows) {
 				mapWriter.write(info, header, processors);
 			}
 			log.info("Writing patient info data to file finished succesfully");
 			
 		}
 		catch (IOException e) {
-			// TODO Auto-generated catch block
 			log.error("Error generated", e);
+			return false;
 		}
 		finally {
 			if (mapWriter != null) {
@@ -139,7 +149,7 @@ public class PatientInfoProviderCSVImpl implements PatientInfoProvider {
 				}
 			}
 		}
-		
+		return true;
 	}
 	
 	/**
@@ -0,0 +1,250 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the patient information in an append-only journal of fixed-width binary records, each an
+ * int patient id followed by a long last index time, or {@link PatientInfoCache#REMOVED} for a removed patient.
+ * Saving appends the changed patients only, the journal is rewritten with the live records once
+ * most of it is superseded.
+ */
+public class PatientInfoProviderJournalImpl implements PatientInfoProvider {
+	
+	private static final Logger log = LoggerFactory.getLogger(PatientInfoProviderJournalImpl.class);
+	
+	public static final int RECORD_SIZE = 12;
+	
+	/**
+	 * The journal is compacted when it holds more than this many records per live patient
+	 */
+	private static final int COMPACTION_RATIO = 2;
+	
+	private static final int MIN_COMPACTION_RECORDS = 10000;
+	
+	private final File file;
+	
+	private long recordsCount;
+	
+	private volatile long loadTime;
+	
+	private final AtomicLong bytesWritten = new AtomicLong();
+	
+	private final AtomicLong compactionsCount = new AtomicLong();
+	
+	public PatientInfoProviderJournalImpl(String fileName) {
+		this.file = new File(fileName);
+	}
+	
+	/**
+	 * Replays the journal through a memory mapping, a torn record at its end is dropped
+	 *
+	 * @see org.apache.solr.handler.dataimport.custom.PatientInfoProvider#readData(org.apache.solr.handler.dataimport.custom.PatientInfoVisitor)
+	 */
+	@Override
+	public synchronized void readData(PatientInfoVisitor visitor) {
+		long start = System.currentTimeMillis();
+		recordsCount = 0;
+		if (!file.exists())
+			return;
+		
+		RandomAccessFile journal = null;
+		try {
+			journal = new RandomAccessFile(file, "rw");
+			FileChannel channel = journal.getChannel();
+			long validLength = channel.size() - channel.size() % RECORD_SIZE;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, validLength);
+			while (buffer.remaining() >= RECORD_SIZE) {
+				visitor.visit(buffer.getInt(), buffer.getLong());
+				recordsCount++;
+			}
+			if (validLength != channel.size()) {
+				log.warn("Dropping a torn record at the end of {}", file);
+				channel.truncate(validLength);
+			}
+		}
+		catch (IOException e) {
+			log.error("Error reading patient information journal", e);
+		}
+		finally {
+			close(journal);
+		}
+		
+		loadTime = System.currentTimeMillis() - start;
+		log.info("Replayed {} patient information journal records in {} ms", recordsCount, loadTime);
+	}
+	
+	/**
+	 * @see org.apache.solr.handler.dataimport.custom.PatientInfoProvider#updateData(org.apache.solr.handler.dataimport.custom.PatientInfoEntries,
+	 *      org.apache.solr.handler.dataimport.custom.PatientInfoEntries)
+	 */
+	@Override
+	public synchronized boolean updateData(PatientInfoEntries data, PatientInfoEntries changes) {
+		int changesCount = changes.size();
+		if (changesCount == 0)
+			return true;
+		
+		long records = recordsCount + changesCount;
+		if (records > MIN_COMPACTION_RECORDS && records > (long) data.size() * COMPACTION_RATIO) {
+			return compact(data);
+		}
+		
+		final ByteBuffer buffer = ByteBuffer.allocate(changesCount * RECORD_SIZE);
+		changes.forEach(new PatientInfoVisitor() {
+			
+			@Override
+			public void visit(int patientId, long lastIndexTime) {
+				buffer.putInt(patientId);
+				buffer.putLong(lastIndexTime);
+			}
+		});
+		buffer.flip();
+		
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(file, true);
+			write(out.getChannel(), buffer);
+			recordsCount += changesCount;
+			return true;
+		}
+		catch (IOException e) {
+			log.error("Error appending to patient information journal", e);
+			return false;
+		}
+		finally {
+			close(out);
+		}
+	}
+	
+	/**
+	 * Rewrites the journal with one record per patient
+	 * 
+	 * @return false if the journal was left as it was
+	 */
+	public synchronized boolean compact(PatientInfoEntries data) {
+		File compacted = new File(file.getPath() + ".tmp");
+		FileOutputStream out = null;
+		boolean completed = false;
+		try {
+			out = new FileOutputStream(compacted);
+			final FileChannel channel = out.getChannel();
+			final ByteBuffer buffer = ByteBuffer.allocate(1024 * RECORD_SIZE);
+			data.forEach(new PatientInfoVisitor() {
+				
+				@Override
+				public void visit(int patientId, long lastIndexTime) {
+					if (buffer.remaining() < RECORD_SIZE) {
+						buffer.flip();
+						writeUnchecked(channel, buffer);
+						buffer.clear();
+					}
+					buffer.putInt(patientId);
+					buffer.putLong(lastIndexTime);
+				}
+			});
+			buffer.flip();
+			write(channel, buffer);
+			completed = true;
+		}
+		catch (UncheckedIOException e) {
+			log.error("Error compacting patient information journal", e.getCause());
+		}
+		catch (IOException e) {
+			log.error("Error compacting patient information journal", e);
+		}
+		finally {
+			close(out);
+		}
+		if (!completed) {
+			compacted.delete();
+			return false;
+		}
+		
+		long written = compacted.length() / RECORD_SIZE;
+		// renameTo does not replace an existing file on every platform
+		if (!compacted.renameTo(file) && !(file.delete() && compacted.renameTo(file))) {
+			log.error("Could not replace {} with its compacted copy", file);
+			return false;
+		}
+		log.info("Compacted patient information journal from {} to {} records", recordsCount, written);
+		recordsCount = written;
+		compactionsCount.incrementAndGet();
+		return true;
+	}
+	
+	private void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		int length = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		channel.force(false);
+		bytesWritten.addAndGet(length);
+	}
+	
+	private void writeUnchecked(FileChannel channel, ByteBuffer buffer) {
+		try {
+			write(channel, buffer);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * @return milliseconds spent replaying the journal at startup
+	 */
+	public long getLoadTime() {
+		return loadTime;
+	}
+	
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+	
+	public long getCompactionsCount() {
+		return compactionsCount.get();
+	}
+	
+	private static void close(Closeable closeable) {
+		if (closeable == null)
+			return;
+		try {
+			closeable.close();
+		}
+		catch (IOException e) {
+			log.error("Error generated", e);
+		}
+	}
+	
+	/**
+	 * Carries a write error out of a {@link PatientInfoVisitor}
+	 */
+	private static class UncheckedIOException extends RuntimeException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private UncheckedIOException(IOException cause) {
+			super(cause);
+		}
+	}
+	
+}
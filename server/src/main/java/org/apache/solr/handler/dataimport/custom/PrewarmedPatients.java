@@ -0,0 +1,137 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Patients imported ahead of their appointments. They are pinned against pruning until their
+ * appointment has passed, the first chart open of each counts as served warm if the patient was
+ * already in the index.
+ */
+public class PrewarmedPatients {
+	
+	private final ConcurrentHashMap<Integer, Pin> pins = new ConcurrentHashMap<Integer, Pin>();
+	
+	private final AtomicLong prewarmedCount = new AtomicLong();
+	
+	private final AtomicLong firstOpensCount = new AtomicLong();
+	
+	private final AtomicLong warmFirstOpensCount = new AtomicLong();
+	
+	/**
+	 * @param until time in milliseconds after which the patient may be pruned again
+	 */
+	public void pin(int patientId, long until) {
+		Pin previous = pins.putIfAbsent(patientId, new Pin(until));
+		if (previous == null) {
+			prewarmedCount.incrementAndGet();
+		} else if (previous.until < until) {
+			// a later appointment of a patient already pinned, the first open is not counted again
+			previous.until = until;
+		}
+	}
+	
+	/**
+	 * Counts the first chart open of a pinned patient
+	 *
+	 * @param indexed whether the patient was in the index when opened
+	 */
+	public void recordOpen(int patientId, boolean indexed) {
+		Pin pin = pins.get(patientId);
+		if (pin == null || !pin.opened.compareAndSet(false, true))
+			return;
+		firstOpensCount.incrementAndGet();
+		if (indexed) {
+			warmFirstOpensCount.incrementAndGet();
+		}
+	}
+	
+	public boolean isPinned(int patientId) {
+		Pin pin = pins.get(patientId);
+		return pin != null && pin.until > System.currentTimeMillis();
+	}
+	
+	/**
+	 * Drops the pins of the patients whose appointment has passed
+	 */
+	public void removeExpired() {
+		long now = System.currentTimeMillis();
+		Iterator<Pin> iterator = pins.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().until <= now) {
+				iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * @return a view of the cached patients without the pinned ones, its size is counted from the
+	 *         pins rather than by visiting the cache
+	 */
+	public PatientInfoEntries withoutPinned(final PatientInfoCache cache) {
+		if (pins.isEmpty())
+			return cache;
+		
+		return new PatientInfoEntries() {
+			
+			@Override
+			public int size() {
+				int pinnedCount = 0;
+				for (Integer patientId : pins.keySet()) {
+					if (isPinned(patientId) && cache.contains(patientId)) {
+						pinnedCount++;
+					}
+				}
+				return Math.max(cache.size() - pinnedCount, 0);
+			}
+			
+			@Override
+			public void forEach(final PatientInfoVisitor visitor) {
+				cache.forEach(new PatientInfoVisitor() {
+					
+					@Override
+					public void visit(int patientId, long lastIndexTime) {
+						if (!isPinned(patientId)) {
+							visitor.visit(patientId, lastIndexTime);
+						}
+					}
+				});
+			}
+		};
+	}
+	
+	public long getPrewarmedCount() {
+		return prewarmedCount.get();
+	}
+	
+	public long getFirstOpensCount() {
+		return firstOpensCount.get();
+	}
+	
+	public long getWarmFirstOpensCount() {
+		return warmFirstOpensCount.get();
+	}
+	
+	private static class Pin {
+		
+		private volatile long until;
+		
+		private final AtomicBoolean opened = new AtomicBoolean();
+		
+		private Pin(long until) {
+			this.until = until;
+		}
+	}
+	
+}
@@ -0,0 +1,78 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps at most the given number of patients in the index, the patients with the lowest score are
+ * deleted first
+ */
+public abstract class ScoredIndexClearStrategy implements IndexClearStrategy {
+	
+	private final int maxPatientsInIndex;
+	
+	protected ScoredIndexClearStrategy(int maxPatientsInIndex) {
+		this.maxPatientsInIndex = maxPatientsInIndex;
+	}
+	
+	/**
+	 * @return the value of keeping the patient in the index, higher is kept longer
+	 */
+	protected abstract long score(int patientId, long lastIndexTime);
+	
+	@Override
+	public List<Integer> getPatientsToDelete(PatientInfoEntries patients) {
+		if (patients.size() <= maxPatientsInIndex)
+			return Collections.emptyList();
+		
+		// the entries are visited once, the lowest scores are then found on primitive copies
+		final int[][] ids = { new int[patients.size()] };
+		final long[][] scores = { new long[ids[0].length] };
+		final int[] count = new int[1];
+		patients.forEach(new PatientInfoVisitor() {
+			
+			@Override
+			public void visit(int patientId, long lastIndexTime) {
+				if (count[0] == ids[0].length) {
+					ids[0] = Arrays.copyOf(ids[0], count[0] * 2 + 1);
+					scores[0] = Arrays.copyOf(scores[0], ids[0].length);
+				}
+				ids[0][count[0]] = patientId;
+				scores[0][count[0]++] = score(patientId, lastIndexTime);
+			}
+		});
+		int toDelete = count[0] - maxPatientsInIndex;
+		if (toDelete <= 0)
+			return Collections.emptyList();
+		long[] sorted = Arrays.copyOf(scores[0], count[0]);
+		Arrays.sort(sorted);
+		long threshold = sorted[toDelete - 1];
+		
+		List<Integer> deletedPatients = new ArrayList<Integer>(toDelete);
+		List<Integer> atThreshold = new ArrayList<Integer>();
+		for (int i = 0; i < count[0]; i++) {
+			if (scores[0][i] < threshold) {
+				deletedPatients.add(ids[0][i]);
+			} else if (scores[0][i] == threshold) {
+				atThreshold.add(ids[0][i]);
+			}
+		}
+		for (int i = 0; i < atThreshold.size() && deletedPatients.size() < toDelete; i++) {
+			deletedPatients.add(atThreshold.get(i));
+		}
+		
+		return deletedPatients;
+	}
+	
+}
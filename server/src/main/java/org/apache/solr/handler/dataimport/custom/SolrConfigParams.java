@@ -9,7 +9,11 @@
  */
 package org.apache.solr.handler.dataimport.custom;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.core.SolrCore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,8 +31,26 @@ public class SolrConfigParams {
 	
 	public static final String INDEX_CLEAR_STRATEGY = "indexClearStrategy";
 	
+	public static final String INDEX_MAX_DOCUMENTS = "indexMaxDocuments";
+	
+	public static final String INDEX_MAX_SIZE = "indexMaxSize";
+	
 	public static final String PATIENT_MAX_NON_USAGE_TIME = "patientMaxNonUsageTime";
 	
+	public static final String MIN_DAEMONS_COUNT = "minDaemonsCount";
+	
+	public static final String MAX_DAEMONS_COUNT = "maxDaemonsCount";
+	
+	public static final String DAEMONS_AUTOSCALE_INTERVAL = "daemonsAutoscaleInterval";
+	
+	public static final String MAX_IMPORT_TIME = "maxImportTime";
+	
+	public static final String COMMIT_INTERVAL = "commitInterval";
+	
+	public static final String GLOBAL_ENTITIES = "globalEntities";
+	
+	public static final String OWNS_GLOBAL_DATA = "ownsGlobalData";
+	
 	public static final int DEFAULT_DAEMONS_COUNT = 3;
 	
 	public static final int DEFAULT_INDEX_SIZE_MANAGER_TIMEOUT = 30;
@@ -37,8 +59,24 @@ public class SolrConfigParams {
 	
 	public static final int DEFAULT_INDEX_MAX_PATIENTS = 100;
 	
+	public static final int DEFAULT_INDEX_MAX_DOCUMENTS = 0; // no limit
+	
+	public static final int DEFAULT_INDEX_MAX_SIZE = 0; // megabytes, no limit
+	
 	public static final int DEFAULT_PATIENT_MAX_NON_USAGE_TIME = 30; // seconds	
 	
+	public static final int DEFAULT_MIN_DAEMONS_COUNT = 1;
+	
+	public static final int DEFAULT_MAX_DAEMONS_COUNT = 8;
+	
+	public static final int DEFAULT_DAEMONS_AUTOSCALE_INTERVAL = 0; // seconds, disabled
+	
+	public static final int DEFAULT_MAX_IMPORT_TIME = 5000; // milliseconds
+	
+	public static final int DEFAULT_COMMIT_INTERVAL = 1000; // milliseconds
+	
+	public static final String DEFAULT_GLOBAL_ENTITIES = "forms";
+	
 	private SolrParams params;
 	
 	public SolrConfigParams(SolrParams params) {
@@ -57,6 +95,58 @@ public class SolrConfigParams {
 		return tryGetInteger(INDEX_SIZE_MANAGER_TIMEOUT, DEFAULT_INDEX_SIZE_MANAGER_TIMEOUT);
 	}
 	
+	public int getMinDaemonsCount() {
+		return tryGetInteger(MIN_DAEMONS_COUNT, DEFAULT_MIN_DAEMONS_COUNT);
+	}
+	
+	public int getMaxDaemonsCount() {
+		return tryGetInteger(MAX_DAEMONS_COUNT, DEFAULT_MAX_DAEMONS_COUNT);
+	}
+	
+	/**
+	 * @return interval of the daemons autoscaler in seconds, 0 if the pool has a fixed size
+	 */
+	public int getDaemonsAutoscaleInterval() {
+		return tryGetInteger(DAEMONS_AUTOSCALE_INTERVAL, DEFAULT_DAEMONS_AUTOSCALE_INTERVAL);
+	}
+	
+	public int getMaxImportTime() {
+		return tryGetInteger(MAX_IMPORT_TIME, DEFAULT_MAX_IMPORT_TIME);
+	}
+	
+	/**
+	 * @return minimal time between two coalesced commits in milliseconds
+	 */
+	public int getCommitInterval() {
+		return tryGetInteger(COMMIT_INTERVAL, DEFAULT_COMMIT_INTERVAL);
+	}
+	
+	/**
+	 * @return names of the root entities which do not depend on a patient, imported by the global
+	 *         import only
+	 */
+	public List<String> getGlobalEntities() {
+		String entities = getProperty(GLOBAL_ENTITIES);
+		if (entities == null) {
+			entities = DEFAULT_GLOBAL_ENTITIES;
+		}
+		List<String> names = new ArrayList<String>();
+		for (String name : entities.split(",")) {
+			if (name.trim().length() > 0) {
+				names.add(name.trim());
+			}
+		}
+		return names;
+	}
+	
+	/**
+	 * @return false for the shards which do not keep the global entities, they skip the startup
+	 *         global import
+	 */
+	public boolean isGlobalDataOwner() {
+		return params.getBool(OWNS_GLOBAL_DATA, true);
+	}
+	
 	public int getPatientInfoTimeout() {
 		return tryGetInteger(PATIENT_INFO_TIMEOUT, DEFAULT_PATIENT_INFO_TIMEOUT);
 	}
@@ -65,7 +155,21 @@ public class SolrConfigParams {
 		return tryGetInteger(INDEX_MAX_PATIENTS, DEFAULT_INDEX_MAX_PATIENTS);
 	}
 	
-	public IndexClearStrategy getIndexClearStrategy(int strategyCode) {
+	/**
+	 * @return maximal number of live documents kept by the budget strategy, 0 for no limit
+	 */
+	public int getIndexMaxDocuments() {
+		return tryGetInteger(INDEX_MAX_DOCUMENTS, DEFAULT_INDEX_MAX_DOCUMENTS);
+	}
+	
+	/**
+	 * @return maximal index size in megabytes kept by the budget strategy, 0 for no limit
+	 */
+	public int getIndexMaxSize() {
+		return tryGetInteger(INDEX_MAX_SIZE, DEFAULT_INDEX_MAX_SIZE);
+	}
+	
+	public IndexClearStrategy getIndexClearStrategy(int strategyCode, SolrCore core, PatientAccessTracker accessTracker) {
 		//TODO Remove duplications
 		try {
 			if (strategyCode == IndexClearStrategies.BASIC.ordinal())
@@ -74,6 +178,13 @@ public class SolrConfigParams {
 				return new IndexClearStrategyNoActionImpl();
 			else if (strategyCode == IndexClearStrategies.NON_USAGE_TIME.ordinal())
 				return new IndexClearStrategyNonUsageTimeImpl(getPatientMaxNonUsageTime());
+			else if (strategyCode == IndexClearStrategies.LEAST_RECENTLY_USED.ordinal())
+				return new IndexClearStrategyLeastRecentlyUsedImpl(getIndexMaxPatients(), accessTracker);
+			else if (strategyCode == IndexClearStrategies.LEAST_FREQUENTLY_USED.ordinal())
+				return new IndexClearStrategyLeastFrequentlyUsedImpl(getIndexMaxPatients(), accessTracker);
+			else if (strategyCode == IndexClearStrategies.BUDGET.ordinal())
+				return new IndexClearStrategyBudgetImpl(core, getIndexMaxDocuments(), getIndexMaxSize() * 1024L * 1024L,
+				        accessTracker);
 			else
 				return new IndexClearStrategyBasicImpl(getIndexMaxPatients());
 			
@@ -84,9 +195,9 @@ public class SolrConfigParams {
 		}
 	}
 	
-	public IndexClearStrategy getIndexClearStrategy() {
+	public IndexClearStrategy getIndexClearStrategy(SolrCore core, PatientAccessTracker accessTracker) {
 		int strategyCode = Integer.parseInt(getProperty(INDEX_CLEAR_STRATEGY));
-		return getIndexClearStrategy(strategyCode);
+		return getIndexClearStrategy(strategyCode, core, accessTracker);
 	}
 	
 	private int tryGetInteger(String propertyName, int defaultValue) {
@@ -9,22 +9,39 @@
  */
 package org.apache.solr.handler.dataimport.custom;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 
 /**
- *
+ * A queued import. Low priority imports are taken only when no other import is waiting, imports of
+ * the same priority in the order they were queued.
  */
-public final class SolrQueryInfo {
+public final class SolrQueryInfo implements Comparable<SolrQueryInfo> {
+	
+	private static final AtomicLong sequence = new AtomicLong();
 	
 	private final SolrQueryRequest request;
 	
 	private final SolrQueryResponse response;
 	
+	private final ImportTicket ticket;
+	
+	private final boolean lowPriority;
+	
+	private final long sequenceNumber = sequence.getAndIncrement();
+	
 	//TODO do not store response
-	public SolrQueryInfo(SolrQueryRequest request, SolrQueryResponse response) {
+	public SolrQueryInfo(SolrQueryRequest request, SolrQueryResponse response, ImportTicket ticket) {
+		this(request, response, ticket, false);
+	}
+	
+	public SolrQueryInfo(SolrQueryRequest request, SolrQueryResponse response, ImportTicket ticket, boolean lowPriority) {
 		this.request = request;
 		this.response = response;
+		this.ticket = ticket;
+		this.lowPriority = lowPriority;
 	}
 	
 	public SolrQueryRequest getRequest() {
@@ -35,4 +52,19 @@ public final class SolrQueryInfo {
 		return response;
 	}
 	
+	public ImportTicket getTicket() {
+		return ticket;
+	}
+	
+	public boolean isLowPriority() {
+		return lowPriority;
+	}
+	
+	@Override
+	public int compareTo(SolrQueryInfo other) {
+		if (lowPriority != other.lowPriority)
+			return lowPriority ? 1 : -1;
+		return sequenceNumber < other.sequenceNumber ? -1 : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+	}
+	
 }
@@ -0,0 +1,49 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.ConcurrentUpdateSolrServer;
+
+/**
+ * Queuing update client which keeps the first error of its sending threads, the plain client only
+ * logs them. Callers learn about failed updates from {@link #blockUntilSent()}.
+ */
+public class CheckedUpdateSolrServer extends ConcurrentUpdateSolrServer {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+	
+	public CheckedUpdateSolrServer(String solrServerUrl, int queueSize, int threadCount) {
+		super(solrServerUrl, queueSize, threadCount);
+	}
+	
+	@Override
+	public void handleError(Throwable ex) {
+		super.handleError(ex);
+		error.compareAndSet(null, ex);
+	}
+	
+	/**
+	 * Waits until the queued updates are sent
+	 * 
+	 * @throws SolrServerException if sending any update failed since the previous check
+	 */
+	public void blockUntilSent() throws SolrServerException {
+		blockUntilFinished();
+		Throwable failure = error.getAndSet(null);
+		if (failure != null)
+			throw new SolrServerException("Sending queued updates failed", failure);
+	}
+	
+}
@@ -18,6 +18,18 @@ public class ConfigCommands {
 	
 	public static final String STATS = "stats";
 	
+	public static final String AWAIT_IMPORT = "await-import";
+	
+	public static final String AWAIT_IMPORT_TIMEOUT = "timeout";
+	
+	public static final String AWAIT_IMPORT_RECORD_ACCESS = "record-access";
+	
+	public static final String PREWARM = "prewarm";
+	
+	public static final String PREWARM_UNTIL = "until";
+	
+	public static final String IMPORT_GLOBAL = "import-global";
+	
 	public static final String PRUNE = "prune";
 	
 	public static final String PRUNE_IDS = "ids";
@@ -32,14 +44,50 @@ public class ConfigCommands {
 	
 	public static final String DAEMONS_COUNT = "daemons-count";
 	
+	/**
+	 * Daemons count which hands the pool back to the autoscaler, or to the configured count without
+	 * autoscaling
+	 */
+	public static final String DAEMONS_COUNT_AUTO = "auto";
+	
 	public class Labels {
 		
 		public static final String PATIENT_LAST_INDEX_TIME = "last index time";
 		
+		public static final String IMPORT_TICKET = "import ticket";
+		
+		public static final String IMPORT_COMPLETED = "import completed";
+		
 		public static final String CLEAR_STRATEGY = "clear strategy";
 		
 		public static final String CLEARED_PATIENTS_COUNT = "cleared patients count";
 		
+		public static final String PRUNE_TIME = "prune time";
+		
+		public static final String PRUNE_STALL_TIME = "prune daemon stall time";
+		
+		public static final String SEARCH_ACCESS_COUNT = "search access count";
+		
+		public static final String SEARCH_HIT_COUNT = "search hit count";
+		
+		public static final String SEARCH_HIT_RATIO = "search hit ratio";
+		
+		public static final String PREWARMED_PATIENTS_COUNT = "prewarmed patients count";
+		
+		public static final String PREWARMED_FIRST_OPENS_COUNT = "prewarmed first opens count";
+		
+		public static final String PREWARMED_WARM_FIRST_OPENS_COUNT = "prewarmed warm first opens count";
+		
+		public static final String COMMIT_REQUESTS_COUNT = "commit requests count";
+		
+		public static final String COMMITS_COUNT = "commits count";
+		
+		public static final String PATIENT_INFO_LOAD_TIME = "patient info load time";
+		
+		public static final String PATIENT_INFO_BYTES_WRITTEN = "patient info bytes written";
+		
+		public static final String PATIENT_INFO_COMPACTIONS_COUNT = "patient info compactions count";
+		
 		public static final String DAEMON_ID = "daemon id";
 		
 		public static final String DAEMON_STATUS = "daemon status";
@@ -48,8 +96,12 @@ public class ConfigCommands {
 		
 		public static final String DAEMON_FAIL_COUNT = "daemon fail count";
 		
+		public static final String DAEMON_RETIRED = "daemon retired";
+		
 		public static final String DAEMON_STATES = "daemon states";
 		
+		public static final String DAEMONS_COUNT_PINNED = "daemons count pinned";
+		
 		public static final String IDLE = "idle";
 		
 		public static final String BUSY = "busy";
@@ -0,0 +1,62 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.common.util.NamedList;
+
+/**
+ * Reads javabin responses and counts their bytes, per calling thread so that one search can report
+ * what it transferred from all the servers it queried
+ */
+public class CountingBinaryResponseParser extends BinaryResponseParser {
+	
+	private static final ThreadLocal<long[]> threadBytes = new ThreadLocal<long[]>() {
+		
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+	
+	private static final AtomicLong totalBytes = new AtomicLong();
+	
+	@Override
+	public NamedList<Object> processResponse(InputStream body, String encoding) {
+		CountingInputStream counting = new CountingInputStream(body);
+		try {
+			return super.processResponse(counting, encoding);
+		}
+		finally {
+			long bytes = counting.getByteCount();
+			threadBytes.get()[0] += bytes;
+			totalBytes.addAndGet(bytes);
+		}
+	}
+	
+	/**
+	 * @return response bytes the calling thread read since its previous call
+	 */
+	public static long resetThreadBytes() {
+		long[] counter = threadBytes.get();
+		long bytes = counter[0];
+		counter[0] = 0;
+		return bytes;
+	}
+	
+	public static long getTotalBytes() {
+		return totalBytes.get();
+	}
+	
+}
@@ -22,11 +22,28 @@ public class EmbeddedSolrProperties {
 	
 	private final String dbPassword;
 	
+	private final String softCommitInterval;
+	
+	private final String autoCommitMaxTime;
+	
 	public EmbeddedSolrProperties(String solrHome, String dbUrl, String dbUser, String dbPassword) {
+		this(solrHome, dbUrl, dbUser, dbPassword, null, null);
+	}
+	
+	/**
+	 * @param softCommitInterval milliseconds between two soft commits, null keeps the solrconfig.xml
+	 *            default
+	 * @param autoCommitMaxTime milliseconds before added documents are hard committed, null keeps the
+	 *            solrconfig.xml default
+	 */
+	public EmbeddedSolrProperties(String solrHome, String dbUrl, String dbUser, String dbPassword,
+	                              String softCommitInterval, String autoCommitMaxTime) {
 		this.solrHome = solrHome;
 		this.dbUrl = dbUrl;
 		this.dbUser = dbUser;
 		this.dbPassword = dbPassword;
+		this.softCommitInterval = softCommitInterval;
+		this.autoCommitMaxTime = autoCommitMaxTime;
 	}
 	
 	public String getSolrHome() {
@@ -45,4 +62,12 @@ public class EmbeddedSolrProperties {
 		return dbPassword;
 	}
 	
+	public String getSoftCommitInterval() {
+		return softCommitInterval;
+	}
+	
+	public String getAutoCommitMaxTime() {
+		return autoCommitMaxTime;
+	}
+	
 }
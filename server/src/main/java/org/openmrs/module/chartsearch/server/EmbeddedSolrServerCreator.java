@@ -10,10 +10,11 @@
 package org.openmrs.module.chartsearch.server;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -40,6 +41,13 @@ public class EmbeddedSolrServerCreator extends SolrServerCreator {
 	
 	private static final Logger log = LoggerFactory.getLogger(EmbeddedSolrServerCreator.class);
 	
+	/**
+	 * System properties substituted into solrconfig.xml when the core is loaded
+	 */
+	public static final String SOFT_COMMIT_INTERVAL_PROPERTY = "chartsearch.softCommitInterval";
+	
+	public static final String AUTO_COMMIT_MAX_TIME_PROPERTY = "chartsearch.autoCommitMaxTime";
+	
 	private SolrServer solrServer;
 	
 	private final EmbeddedSolrProperties properties;
@@ -48,35 +56,46 @@ public class EmbeddedSolrServerCreator extends SolrServerCreator {
 		this.properties = properties;
 	}
 	
+	/**
+	 * Returns at once, the config folder is synchronized and the core loaded by a background thread
+	 * 
+	 * @return a {@link WarmingSolrServer} which is ready once the core is loaded
+	 */
 	@Override
 	public SolrServer createSolrServer() {
-		
-		// If user has not setup solr config folder, set a default one
-		// TODO use solr functions to determine config folder
-		String configFolderPath = properties.getSolrHome() + File.separatorChar + "collection1" + File.separatorChar
-		        + "conf";
-		File configFolder = new File(configFolderPath);
-		if (configFolder.exists()) {
-			try {
-				FileUtils.deleteDirectory(configFolder);
-			}
-			catch (IOException e) {
-				e.printStackTrace();
+		final WarmingSolrServer warmingServer = new WarmingSolrServer();
+		Thread warmUp = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					warmingServer.ready(loadSolrServer());
+				}
+				catch (Exception e) {
+					log.error("Embedded Solr core failed to load", e);
+					warmingServer.failed(e);
+				}
 			}
-		}
+		}, "chartsearch-solr-warm-up");
+		warmUp.setDaemon(true);
+		warmUp.start();
+		return warmingServer;
+	}
+	
+	private SolrServer loadSolrServer() throws Exception {
+		long start = System.currentTimeMillis();
 		
-		URL url = getClass().getClassLoader().getResource("collection1/conf");
+		// TODO use solr functions to determine config folder
+		File configFolder = new File(properties.getSolrHome() + File.separatorChar + "collection1" + File.separatorChar
+		        + "conf");
 		try {
-			File file = new File(url.toURI());
-			FileUtils
-			        .copyDirectoryToDirectory(file, new File(properties.getSolrHome() + File.separatorChar + "collection1"));
-			setDataImportConnectionInfo(configFolderPath);
-		}
-		catch (IOException e) {
-			log.error("Failed to copy Solr config folder", e);
+			URL url = getClass().getClassLoader().getResource("collection1/conf");
+			int written = syncConfigFolder(new File(url.toURI()), configFolder);
+			log.info(String.format("Solr config folder synchronized, %d files written in %d ms", written,
+			    System.currentTimeMillis() - start));
 		}
 		catch (Exception e) {
-			log.error("Failed to set dataImport connection info", e);
+			log.error("Failed to synchronize Solr config folder", e);
 		}
 		
 		// Get the solr home folder
@@ -85,37 +104,76 @@ public class EmbeddedSolrServerCreator extends SolrServerCreator {
 		
 		log.info(String.format("solr.solr.home: %s", properties.getSolrHome()));
 		
+		setCommitProperty(SOFT_COMMIT_INTERVAL_PROPERTY, properties.getSoftCommitInterval());
+		setCommitProperty(AUTO_COMMIT_MAX_TIME_PROPERTY, properties.getAutoCommitMaxTime());
+		
 		CoreContainer.Initializer initializer = new CoreContainer.Initializer();
-		CoreContainer coreContainer;
-		try {
-			coreContainer = initializer.initialize();
-			solrServer = new EmbeddedSolrServer(coreContainer, "");
-			return solrServer;
+		CoreContainer coreContainer = initializer.initialize();
+		Map<String, Exception> failures = coreContainer.getCoreInitFailures();
+		if (!failures.isEmpty()) {
+			coreContainer.shutdown();
+			throw failures.values().iterator().next();
 		}
-		catch (FileNotFoundException e) {
-			e.printStackTrace();
-			return null;
-		}
-		catch (Exception e) {
-			e.printStackTrace();
-			return null;
+		solrServer = new EmbeddedSolrServer(coreContainer, "");
+		log.info(String.format("Embedded Solr server warmed up in %d ms", System.currentTimeMillis() - start));
+		return solrServer;
+	}
+	
+	/**
+	 * Writes the files of the source folder whose content differs from the copy in the target
+	 * folder and deletes the files the source folder no longer has. data-config.xml gets the
+	 * database connection info before comparing.
+	 * 
+	 * @return the number of files written
+	 */
+	private int syncConfigFolder(File source, File target) throws Exception {
+		int written = 0;
+		if (!target.isDirectory() && !target.mkdirs())
+			throw new IOException("Cannot create " + target);
+		
+		for (File file : source.listFiles()) {
+			File copy = new File(target, file.getName());
+			if (file.isDirectory()) {
+				written += syncConfigFolder(file, copy);
+				continue;
+			}
+			
+			byte[] content = "data-config.xml".equals(file.getName()) ? getDataImportConfig(file) : FileUtils
+			        .readFileToByteArray(file);
+			if (!copy.isFile() || !Arrays.equals(content, FileUtils.readFileToByteArray(copy))) {
+				FileUtils.writeByteArrayToFile(copy, content);
+				written++;
+			}
 		}
 		
+		for (File copy : target.listFiles()) {
+			if (!new File(source, copy.getName()).exists()) {
+				FileUtils.forceDelete(copy);
+			}
+		}
+		return written;
+	}
+	
+	private void setCommitProperty(String name, String value) {
+		if (value == null || !value.trim().matches("\\d+")) {
+			System.clearProperty(name);
+			return;
+		}
+		System.setProperty(name, value.trim());
+		log.info(String.format("%s: %s ms", name, value.trim()));
 	}
 	
-	private void setDataImportConnectionInfo(String configFolder) throws Exception {
+	private byte[] getDataImportConfig(File dataConfig) throws Exception {
 		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
 		DocumentBuilder db = dbf.newDocumentBuilder();
-		Document doc = db.parse(getClass().getClassLoader().getResourceAsStream("collection1/conf/data-config.xml"));
+		Document doc = db.parse(dataConfig);
 		Element node = (Element) doc.getElementsByTagName("dataSource").item(0);
 		
 		node.setAttribute("url", properties.getDbUrl());
 		node.setAttribute("user", properties.getDbUser());
 		node.setAttribute("password", properties.getDbPassword());
 		
-		String xml = doc2String(doc);
-		File file = new File(configFolder + File.separatorChar + "data-config.xml");
-		FileUtils.writeStringToFile(file, xml, "UTF-8");
+		return doc2String(doc).getBytes("UTF-8");
 	}
 	
 	public static String doc2String(Node doc) throws Exception {
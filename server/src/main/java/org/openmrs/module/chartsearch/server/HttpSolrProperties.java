@@ -0,0 +1,101 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+/**
+ * Connection pool and update queue settings of the clients of a dedicated Solr server
+ */
+public class HttpSolrProperties {
+	
+	public static final int DEFAULT_MAX_CONNECTIONS = 128;
+	
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 32;
+	
+	public static final int DEFAULT_CONNECTION_TIMEOUT = 5000; // milliseconds
+	
+	public static final int DEFAULT_SOCKET_TIMEOUT = 30000; // milliseconds
+	
+	public static final int DEFAULT_UPDATE_QUEUE_SIZE = 20; // update requests
+	
+	public static final int DEFAULT_UPDATE_THREADS = 2;
+	
+	private final String solrUrl;
+	
+	private final int maxConnections;
+	
+	private final int maxConnectionsPerHost;
+	
+	private final int connectionTimeout;
+	
+	private final int socketTimeout;
+	
+	private final int updateQueueSize;
+	
+	private final int updateThreads;
+	
+	public HttpSolrProperties(String solrUrl) {
+		this(solrUrl, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_CONNECTION_TIMEOUT,
+		        DEFAULT_SOCKET_TIMEOUT, DEFAULT_UPDATE_QUEUE_SIZE, DEFAULT_UPDATE_THREADS);
+	}
+	
+	/**
+	 * @param connectionTimeout milliseconds to wait for a connection to the server
+	 * @param socketTimeout milliseconds to wait for a response once connected
+	 * @param updateQueueSize number of update requests buffered before adding blocks
+	 * @param updateThreads number of threads sending the buffered update requests
+	 */
+	public HttpSolrProperties(String solrUrl, int maxConnections, int maxConnectionsPerHost, int connectionTimeout,
+	                          int socketTimeout, int updateQueueSize, int updateThreads) {
+		this.solrUrl = solrUrl;
+		this.maxConnections = maxConnections;
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+		this.connectionTimeout = connectionTimeout;
+		this.socketTimeout = socketTimeout;
+		this.updateQueueSize = updateQueueSize;
+		this.updateThreads = updateThreads;
+	}
+	
+	/**
+	 * @return the same settings for another server, e.g. another shard
+	 */
+	public HttpSolrProperties forUrl(String url) {
+		return new HttpSolrProperties(url, maxConnections, maxConnectionsPerHost, connectionTimeout, socketTimeout,
+		        updateQueueSize, updateThreads);
+	}
+	
+	public String getSolrUrl() {
+		return solrUrl;
+	}
+	
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+	
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+	
+	public int getConnectionTimeout() {
+		return connectionTimeout;
+	}
+	
+	public int getSocketTimeout() {
+		return socketTimeout;
+	}
+	
+	public int getUpdateQueueSize() {
+		return updateQueueSize;
+	}
+	
+	public int getUpdateThreads() {
+		return updateThreads;
+	}
+	
+}
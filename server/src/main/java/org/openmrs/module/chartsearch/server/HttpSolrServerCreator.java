@@ -13,18 +13,23 @@ import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.impl.HttpSolrServer;
 
 /**
- *
+ * Creates the clients of a dedicated Solr server: a pooled client for queries and a separate
+ * client sending index updates from its own queue, so that searches do not wait behind bulk adds
  */
 public class HttpSolrServerCreator extends SolrServerCreator {
 	
-	private final String solrHttpAddress;
+	private final HttpSolrProperties properties;
 	
 	public HttpSolrServerCreator(String solrHttpAddress) {
-		this.solrHttpAddress = solrHttpAddress;
+		this(new HttpSolrProperties(solrHttpAddress));
+	}
+	
+	public HttpSolrServerCreator(HttpSolrProperties properties) {
+		this.properties = properties;
 	}
 	
 	public String getSolrHttpAddress() {
-		return solrHttpAddress;
+		return properties.getSolrUrl();
 	}
 	
 	/**
@@ -32,7 +37,25 @@ public class HttpSolrServerCreator extends SolrServerCreator {
 	 */
 	@Override
 	public SolrServer createSolrServer() {
-		return new HttpSolrServer(getSolrHttpAddress());
+		HttpSolrServer server = new HttpSolrServer(getSolrHttpAddress());
+		server.setMaxTotalConnections(properties.getMaxConnections());
+		server.setDefaultMaxConnectionsPerHost(properties.getMaxConnectionsPerHost());
+		server.setConnectionTimeout(properties.getConnectionTimeout());
+		server.setSoTimeout(properties.getSocketTimeout());
+		server.setParser(new CountingBinaryResponseParser());
+		return server;
+	}
+	
+	/**
+	 * @return a client queuing update requests and sending them on background threads, errors are
+	 *         reported by {@link CheckedUpdateSolrServer#blockUntilSent()}
+	 */
+	public SolrServer createUpdateServer() {
+		CheckedUpdateSolrServer server = new CheckedUpdateSolrServer(getSolrHttpAddress(),
+		        properties.getUpdateQueueSize(), properties.getUpdateThreads());
+		server.setConnectionTimeout(properties.getConnectionTimeout());
+		server.setSoTimeout(properties.getSocketTimeout());
+		return server;
 	}
 	
 }
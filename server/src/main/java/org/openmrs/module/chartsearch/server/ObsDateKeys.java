@@ -0,0 +1,65 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Year, month and day keys of an obs_datetime, indexed for the facets and the timeline. They are
+ * formatted in UTC, the zone Solr rounds the timeline's range buckets in, so an obs is counted and
+ * listed in the same bucket.
+ */
+public class ObsDateKeys {
+	
+	public static final String YEAR_FIELD = "obs_year_facet";
+	
+	public static final String MONTH_FIELD = "obs_month_facet";
+	
+	public static final String DAY_FIELD = "obs_day_facet";
+	
+	public static final String YEAR_PATTERN = "yyyy";
+	
+	public static final String MONTH_PATTERN = "yyyy-MM";
+	
+	public static final String DAY_PATTERN = "yyyy-MM-dd";
+	
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+	
+	private ObsDateKeys() {
+	}
+	
+	/**
+	 * @return the date formatted with the pattern in UTC
+	 */
+	public static String format(Date date, String pattern) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.ENGLISH);
+		format.setTimeZone(UTC);
+		return format.format(date);
+	}
+	
+	/**
+	 * @return the key of each field, empty if the obs has no date
+	 */
+	public static Map<String, String> getKeys(Date obsDatetime) {
+		Map<String, String> keys = new LinkedHashMap<String, String>();
+		if (obsDatetime != null) {
+			keys.put(YEAR_FIELD, format(obsDatetime, YEAR_PATTERN));
+			keys.put(MONTH_FIELD, format(obsDatetime, MONTH_PATTERN));
+			keys.put(DAY_FIELD, format(obsDatetime, DAY_PATTERN));
+		}
+		return keys;
+	}
+	
+}
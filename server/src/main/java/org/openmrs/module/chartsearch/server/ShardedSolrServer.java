@@ -0,0 +1,303 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.ConcurrentUpdateSolrServer;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+
+/**
+ * Spreads the chart index over several Solr cores by a hash of the patient id. Requests of one
+ * patient and that patient's documents go to the owning shard only, searches across patients are
+ * distributed over all shards by Solr itself. Data which does not belong to a patient is kept on
+ * the first shard, the other shards are configured not to import it (ownsGlobalData in
+ * solrconfig.xml). Handler commands without a patient are sent to every shard and their counts
+ * added up.
+ */
+public class ShardedSolrServer extends SolrServer {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Path of the chart search data import handler, as configured in solrconfig.xml
+	 */
+	private static final String DATA_IMPORT_PATH = "/csdataimport";
+	
+	private static final Pattern PATIENT_FILTER = Pattern.compile("^\\(?(?:person_id|patient_id):(\\d+)\\b");
+	
+	private static final Set<String> SUMMED_LABELS = new HashSet<String>(Arrays.asList(
+	    ConfigCommands.Labels.CLEARED_PATIENTS_COUNT, ConfigCommands.Labels.PRUNE_TIME,
+	    ConfigCommands.Labels.PRUNE_STALL_TIME, ConfigCommands.Labels.SEARCH_ACCESS_COUNT,
+	    ConfigCommands.Labels.SEARCH_HIT_COUNT, ConfigCommands.Labels.PREWARMED_PATIENTS_COUNT,
+	    ConfigCommands.Labels.PREWARMED_FIRST_OPENS_COUNT, ConfigCommands.Labels.PREWARMED_WARM_FIRST_OPENS_COUNT,
+	    ConfigCommands.Labels.COMMIT_REQUESTS_COUNT, ConfigCommands.Labels.COMMITS_COUNT,
+	    ConfigCommands.Labels.PATIENT_INFO_BYTES_WRITTEN, ConfigCommands.Labels.PATIENT_INFO_COMPACTIONS_COUNT));
+	
+	/**
+	 * Times the shards spend at once, the slowest shard is reported
+	 */
+	private static final Set<String> MAX_LABELS = new HashSet<String>(
+	        Arrays.asList(ConfigCommands.Labels.PATIENT_INFO_LOAD_TIME));
+	
+	private final List<SolrServer> shards;
+	
+	/**
+	 * Shard addresses in the form the shards parameter of a distributed search takes them
+	 */
+	private final String shardAddresses;
+	
+	private final AtomicInteger nextAggregator = new AtomicInteger();
+	
+	/**
+	 * @param shards one client per shard, in the same order on every OpenMRS node
+	 * @param shardUrls the base URL of each shard
+	 */
+	public ShardedSolrServer(List<SolrServer> shards, List<String> shardUrls) {
+		this.shards = new ArrayList<SolrServer>(shards);
+		List<String> addresses = new ArrayList<String>(shardUrls.size());
+		for (String url : shardUrls) {
+			addresses.add(StringUtils.removeEnd(url.replaceFirst("^https?://", ""), "/"));
+		}
+		this.shardAddresses = StringUtils.join(addresses, ',');
+	}
+	
+	/**
+	 * Changing the number or order of the shards moves patients to other shards, they are imported
+	 * there again on their next search
+	 * 
+	 * @return the index of the shard owning the patient
+	 */
+	public static int getShardIndex(int patientId, int shardsCount) {
+		// Fibonacci hashing, so that ids allocated in steps do not pile up on one shard
+		int hash = patientId * 0x9E3779B9;
+		return (hash >>> 1) % shardsCount;
+	}
+	
+	public int getShardsCount() {
+		return shards.size();
+	}
+	
+	private SolrServer getShard(Integer patientId) {
+		if (patientId == null)
+			return shards.get(0);
+		return shards.get(getShardIndex(patientId, shards.size()));
+	}
+	
+	@Override
+	public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+		if (request instanceof UpdateRequest)
+			return update((UpdateRequest) request);
+		
+		SolrParams params = request.getParams();
+		Integer patientId = getPatientId(params);
+		if (patientId != null)
+			return getShard(patientId).request(request);
+		
+		if (DATA_IMPORT_PATH.equals(request.getPath())) {
+			if (ConfigCommands.IMPORT_GLOBAL.equals(params.get("command")))
+				return getShard(null).request(request);
+			return broadcastCommand(request);
+		}
+		if (request instanceof QueryRequest)
+			return distribute((QueryRequest) request);
+		return getShard(null).request(request);
+	}
+	
+	/**
+	 * @return the patient a request is about, from its personId parameter or a leading person_id or
+	 *         patient_id filter, null for requests across patients
+	 */
+	private static Integer getPatientId(SolrParams params) {
+		if (params == null)
+			return null;
+		Integer personId = params.getInt("personId");
+		if (personId != null)
+			return personId;
+		
+		String[] filters = params.getParams(CommonParams.FQ);
+		if (filters == null)
+			return null;
+		for (String filter : filters) {
+			Matcher matcher = PATIENT_FILTER.matcher(filter.trim());
+			if (matcher.find())
+				return Integer.valueOf(matcher.group(1));
+		}
+		return null;
+	}
+	
+	private static Integer getPatientId(SolrInputDocument document) {
+		Object value = document.getFieldValue("person_id");
+		if (value == null)
+			value = document.getFieldValue("patient_id");
+		if (value instanceof Number)
+			return ((Number) value).intValue();
+		if (value != null && StringUtils.isNumeric(value.toString()))
+			return Integer.valueOf(value.toString());
+		return null;
+	}
+	
+	/**
+	 * Routes added documents to their shards, deletes, commits and optimizes go to every shard
+	 */
+	private NamedList<Object> update(UpdateRequest request) throws SolrServerException, IOException {
+		if (request.getDocIterator() != null)
+			throw new SolrServerException("Streamed documents can not be routed to a shard");
+		
+		List<SolrInputDocument> documents = request.getDocuments();
+		if (documents == null || documents.isEmpty())
+			return broadcast(request);
+		
+		NamedList<Object> response = null;
+		if (hasDeletes(request)) {
+			UpdateRequest deletes = new UpdateRequest(request.getPath());
+			deletes.setParams(request.getParams());
+			if (request.getDeleteById() != null)
+				deletes.deleteById(request.getDeleteById());
+			if (request.getDeleteQuery() != null) {
+				for (String query : request.getDeleteQuery()) {
+					deletes.deleteByQuery(query);
+				}
+			}
+			response = broadcast(deletes);
+		}
+		
+		Map<SolrServer, UpdateRequest> routed = new LinkedHashMap<SolrServer, UpdateRequest>();
+		for (SolrInputDocument document : documents) {
+			SolrServer shard = getShard(getPatientId(document));
+			UpdateRequest shardRequest = routed.get(shard);
+			if (shardRequest == null) {
+				shardRequest = new UpdateRequest(request.getPath());
+				shardRequest.setParams(request.getParams());
+				routed.put(shard, shardRequest);
+			}
+			shardRequest.add(document);
+		}
+		for (Map.Entry<SolrServer, UpdateRequest> entry : routed.entrySet()) {
+			response = entry.getKey().request(entry.getValue());
+		}
+		return response;
+	}
+	
+	private static boolean hasDeletes(UpdateRequest request) {
+		return (request.getDeleteById() != null && !request.getDeleteById().isEmpty())
+		        || (request.getDeleteQuery() != null && !request.getDeleteQuery().isEmpty());
+	}
+	
+	private NamedList<Object> broadcast(SolrRequest request) throws SolrServerException, IOException {
+		NamedList<Object> response = null;
+		for (SolrServer shard : shards) {
+			if (shard instanceof CheckedUpdateSolrServer) {
+				// queued documents have to reach the shard before it commits
+				((CheckedUpdateSolrServer) shard).blockUntilSent();
+			}
+			response = shard.request(request);
+		}
+		return response;
+	}
+	
+	/**
+	 * Sends a handler command to every shard, counts and total times are added up, times spent at
+	 * once take the slowest shard, lists are joined and the hit ratio is computed again from the
+	 * summed counts. Any other value is taken from the first shard.
+	 */
+	@SuppressWarnings("unchecked")
+	private NamedList<Object> broadcastCommand(SolrRequest request) throws SolrServerException, IOException {
+		NamedList<Object> merged = null;
+		for (SolrServer shard : shards) {
+			NamedList<Object> response = shard.request(request);
+			if (merged == null) {
+				merged = response;
+				continue;
+			}
+			for (int i = 0; i < merged.size(); i++) {
+				String name = merged.getName(i);
+				Object value = merged.getVal(i);
+				Object other = response.get(name);
+				if (value instanceof Number && other instanceof Number) {
+					if (SUMMED_LABELS.contains(name)) {
+						merged.setVal(i, sum((Number) value, (Number) other));
+					} else if (MAX_LABELS.contains(name)) {
+						merged.setVal(i, max((Number) value, (Number) other));
+					}
+				} else if (value instanceof List && other instanceof List) {
+					((List<Object>) value).addAll((List<Object>) other);
+				}
+			}
+		}
+		if (merged != null) {
+			mergeHitRatio(merged);
+		}
+		return merged;
+	}
+	
+	private static void mergeHitRatio(NamedList<Object> merged) {
+		int index = merged.indexOf(ConfigCommands.Labels.SEARCH_HIT_RATIO, 0);
+		Object accesses = merged.get(ConfigCommands.Labels.SEARCH_ACCESS_COUNT);
+		Object hits = merged.get(ConfigCommands.Labels.SEARCH_HIT_COUNT);
+		if (index < 0 || !(accesses instanceof Number) || !(hits instanceof Number))
+			return;
+		long accessCount = ((Number) accesses).longValue();
+		merged.setVal(index, accessCount == 0 ? 0d : ((Number) hits).doubleValue() / accessCount);
+	}
+	
+	private static Number max(Number value, Number other) {
+		return value.doubleValue() >= other.doubleValue() ? value : other;
+	}
+	
+	private static Number sum(Number value, Number other) {
+		if (value instanceof Integer && other instanceof Integer)
+			return value.intValue() + other.intValue();
+		return value.longValue() + other.longValue();
+	}
+	
+	/**
+	 * Lets one shard, in turn, gather the results of all shards
+	 */
+	private NamedList<Object> distribute(QueryRequest request) throws SolrServerException, IOException {
+		ModifiableSolrParams params = new ModifiableSolrParams(request.getParams());
+		params.set(ShardParams.SHARDS, shardAddresses);
+		QueryRequest distributed = new QueryRequest(params, request.getMethod());
+		int aggregator = (nextAggregator.getAndIncrement() & Integer.MAX_VALUE) % shards.size();
+		return shards.get(aggregator).request(distributed);
+	}
+	
+	@Override
+	public void shutdown() {
+		for (SolrServer shard : shards) {
+			if (shard instanceof ConcurrentUpdateSolrServer) {
+				((ConcurrentUpdateSolrServer) shard).blockUntilFinished();
+			}
+			shard.shutdown();
+		}
+	}
+	
+}
@@ -0,0 +1,61 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrServer;
+
+/**
+ * Creates the clients of a chart index sharded by patient over several dedicated Solr servers,
+ * each shard gets its own pooled query client and update client
+ */
+public class ShardedSolrServerCreator extends HttpSolrServerCreator {
+	
+	private final HttpSolrProperties properties;
+	
+	private final List<String> shardUrls;
+	
+	/**
+	 * @param properties connection settings applied to every shard
+	 * @param shardUrls base URL of each shard, the order decides which shard owns which patient
+	 */
+	public ShardedSolrServerCreator(HttpSolrProperties properties, List<String> shardUrls) {
+		super(properties);
+		this.properties = properties;
+		this.shardUrls = shardUrls;
+	}
+	
+	/**
+	 * @see org.openmrs.module.chartsearch.server.HttpSolrServerCreator#createSolrServer()
+	 */
+	@Override
+	public SolrServer createSolrServer() {
+		List<SolrServer> shards = new ArrayList<SolrServer>(shardUrls.size());
+		for (String url : shardUrls) {
+			shards.add(new HttpSolrServerCreator(properties.forUrl(url)).createSolrServer());
+		}
+		return new ShardedSolrServer(shards, shardUrls);
+	}
+	
+	/**
+	 * @see org.openmrs.module.chartsearch.server.HttpSolrServerCreator#createUpdateServer()
+	 */
+	@Override
+	public SolrServer createUpdateServer() {
+		List<SolrServer> shards = new ArrayList<SolrServer>(shardUrls.size());
+		for (String url : shardUrls) {
+			shards.add(new HttpSolrServerCreator(properties.forUrl(url)).createUpdateServer());
+		}
+		return new ShardedSolrServer(shards, shardUrls);
+	}
+	
+}
@@ -0,0 +1,26 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+import org.apache.solr.client.solrj.SolrServerException;
+
+/**
+ * Thrown for requests to an embedded Solr server whose core failed to load, the cause is the load
+ * error
+ */
+public class SolrLoadFailedException extends SolrServerException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public SolrLoadFailedException(Throwable cause) {
+		super("Solr core failed to load", cause);
+	}
+	
+}
@@ -23,12 +23,22 @@ public class StatisticsInfo {
 	
 	private List<HashMap<String, Object>> daemonStates;
 	
+	private double searchHitRatio;
+	
+	private boolean daemonsCountPinned;
+	
 	public StatisticsInfo(String indexClearStrategyName, int clearedPatientsCount, List<HashMap<String, Object>> daemonStates) {
 		this.strategyName = indexClearStrategyName;
 		this.pruneCount = clearedPatientsCount;
 		this.daemonStates = daemonStates;
 	}
 	
+	public StatisticsInfo(String indexClearStrategyName, int clearedPatientsCount,
+	                      List<HashMap<String, Object>> daemonStates, double searchHitRatio) {
+		this(indexClearStrategyName, clearedPatientsCount, daemonStates);
+		this.searchHitRatio = searchHitRatio;
+	}
+	
 	public String getStrategyName() {
 		return strategyName;
 	}
@@ -41,6 +51,24 @@ public class StatisticsInfo {
 		return daemonStates;
 	}
 	
+	/**
+	 * @return share of the searches which found the patient still in the index
+	 */
+	public double getSearchHitRatio() {
+		return searchHitRatio;
+	}
+	
+	/**
+	 * @return true if the daemons count was set by hand and autoscaling is off until it is resumed
+	 */
+	public boolean isDaemonsCountPinned() {
+		return daemonsCountPinned;
+	}
+	
+	public void setDaemonsCountPinned(boolean daemonsCountPinned) {
+		this.daemonsCountPinned = daemonsCountPinned;
+	}
+	
 	@Override
 	public String toString() {
 		return String.format("Strategy name: %s\nPruneCount: %s\nDaemon states: %s", strategyName.toString(), pruneCount,
@@ -0,0 +1,149 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.handler.dataimport.DataImporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stands in for the embedded Solr server while its core loads in the background. Until then
+ * patient imports are kept and sent once the core is ready, any other request fails with a
+ * {@link SolrWarmingException}. If the core fails to load every request fails with a
+ * {@link SolrLoadFailedException} carrying the load error.
+ */
+public class WarmingSolrServer extends SolrServer {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final Logger log = LoggerFactory.getLogger(WarmingSolrServer.class);
+	
+	private volatile SolrServer server;
+	
+	private volatile Throwable loadError;
+	
+	private boolean shutdown;
+	
+	private final List<SolrRequest> deferredImports = new ArrayList<SolrRequest>();
+	
+	private final long createdTime = System.currentTimeMillis();
+	
+	private volatile long warmUpTime;
+	
+	@Override
+	public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+		SolrServer ready = server;
+		if (ready != null)
+			return ready.request(request);
+		
+		synchronized (this) {
+			if (server == null) {
+				if (loadError != null)
+					throw new SolrLoadFailedException(loadError);
+				if (isImport(request)) {
+					deferredImports.add(request);
+					return new NamedList<Object>();
+				}
+				throw new SolrWarmingException();
+			}
+		}
+		return server.request(request);
+	}
+	
+	private static boolean isImport(SolrRequest request) {
+		SolrParams params = request.getParams();
+		return params != null && DataImporter.IMPORT_CMD.equals(params.get("command"));
+	}
+	
+	/**
+	 * Hands the loaded server over and sends the imports requested meanwhile
+	 */
+	void ready(SolrServer loaded) {
+		List<SolrRequest> imports;
+		synchronized (this) {
+			if (shutdown) {
+				loaded.shutdown();
+				return;
+			}
+			warmUpTime = System.currentTimeMillis() - createdTime;
+			server = loaded;
+			imports = new ArrayList<SolrRequest>(deferredImports);
+			deferredImports.clear();
+		}
+		for (SolrRequest request : imports) {
+			try {
+				loaded.request(request);
+			}
+			catch (Exception e) {
+				log.error("Failed to send an import deferred during warm-up", e);
+			}
+		}
+		if (!imports.isEmpty()) {
+			log.info("Sent {} imports deferred during warm-up", imports.size());
+		}
+	}
+	
+	/**
+	 * Keeps the load error, the imports requested meanwhile are dropped
+	 */
+	synchronized void failed(Throwable error) {
+		loadError = error;
+		if (!deferredImports.isEmpty()) {
+			log.warn("Dropped {} imports deferred during warm-up", deferredImports.size());
+		}
+		deferredImports.clear();
+	}
+	
+	/**
+	 * @return true once the core is loaded
+	 */
+	public boolean isReady() {
+		return server != null;
+	}
+	
+	/**
+	 * @return true if the core failed to load, it will not become ready
+	 */
+	public boolean isFailed() {
+		return loadError != null;
+	}
+	
+	/**
+	 * @return the error the core failed to load with, null unless {@link #isFailed()}
+	 */
+	public Throwable getLoadError() {
+		return loadError;
+	}
+	
+	/**
+	 * @return milliseconds the core took to load, 0 before it is loaded
+	 */
+	public long getWarmUpTime() {
+		return warmUpTime;
+	}
+	
+	@Override
+	public synchronized void shutdown() {
+		shutdown = true;
+		if (server != null) {
+			server.shutdown();
+		}
+	}
+	
+}
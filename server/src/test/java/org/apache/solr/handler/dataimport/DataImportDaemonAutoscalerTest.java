@@ -0,0 +1,49 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DataImportDaemonAutoscalerTest {
+	
+	@Test
+	public void getTargetSize_shouldGrowWhileImportsQueueUp() {
+		DataImportDaemonAutoscaler autoscaler = new DataImportDaemonAutoscaler(null, 1, 4, 0);
+		
+		Assert.assertEquals(3, autoscaler.getTargetSize(2, 5, 0, 0));
+		Assert.assertEquals(4, autoscaler.getTargetSize(4, 5, 0, 0));
+	}
+	
+	@Test
+	public void getTargetSize_shouldKeepAPinnedCount() {
+		DataImportDaemonAutoscaler autoscaler = new DataImportDaemonAutoscaler(null, 1, 4, 0);
+		
+		autoscaler.pin(6);
+		
+		Assert.assertTrue(autoscaler.isPinned());
+		Assert.assertEquals(6, autoscaler.getTargetSize(6, 0, 6, 0));
+		Assert.assertEquals(6, autoscaler.getTargetSize(2, 5, 0, 0));
+	}
+	
+	@Test
+	public void getTargetSize_shouldSizeBetweenTheConfiguredCountsOnceUnpinned() {
+		DataImportDaemonAutoscaler autoscaler = new DataImportDaemonAutoscaler(null, 1, 4, 0);
+		autoscaler.pin(6);
+		
+		autoscaler.unpin();
+		
+		Assert.assertFalse(autoscaler.isPinned());
+		Assert.assertEquals(4, autoscaler.getTargetSize(6, 0, 6, 0));
+		Assert.assertEquals(1, autoscaler.getTargetSize(1, 0, 1, 0));
+		Assert.assertEquals(3, autoscaler.getTargetSize(2, 5, 0, 0));
+	}
+	
+}
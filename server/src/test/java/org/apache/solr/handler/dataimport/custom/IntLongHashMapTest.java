@@ -0,0 +1,164 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.apache.solr.handler.dataimport.custom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntLongHashMapTest {
+	
+	/**
+	 * Table size of a new map, it is not resized below 12 entries
+	 */
+	private static final int MASK = 15;
+	
+	/**
+	 * Same hash as the map
+	 */
+	private static int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & MASK;
+	}
+	
+	/**
+	 * @return the given number of positive keys whose probe sequence starts at the slot
+	 */
+	private static List<Integer> keysAtSlot(int slot, int count) {
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int key = 1; keys.size() < count; key++) {
+			if (slot(key) == slot) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+	
+	private static void assertContainsOnly(IntLongHashMap map, Map<Integer, Long> expected) {
+		Assert.assertEquals(expected.size(), map.size());
+		for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+			Assert.assertTrue("Missing key " + entry.getKey(), map.containsKey(entry.getKey()));
+			Assert.assertEquals(entry.getValue().longValue(), map.get(entry.getKey(), -1));
+		}
+		final int[] visited = new int[1];
+		map.forEach(new PatientInfoVisitor() {
+			
+			@Override
+			public void visit(int patientId, long lastIndexTime) {
+				visited[0]++;
+			}
+		});
+		Assert.assertEquals(expected.size(), visited[0]);
+	}
+	
+	@Test
+	public void put_shouldReplaceTheValueOfAnExistingKey() {
+		IntLongHashMap map = new IntLongHashMap();
+		
+		Assert.assertTrue(map.put(7, 1L));
+		Assert.assertFalse(map.put(7, 2L));
+		
+		Assert.assertEquals(1, map.size());
+		Assert.assertEquals(2L, map.get(7, -1));
+		Assert.assertEquals(-1L, map.get(8, -1));
+	}
+	
+	@Test
+	public void put_shouldKeepTheZeroKey() {
+		IntLongHashMap map = new IntLongHashMap();
+		
+		Assert.assertTrue(map.put(0, 5L));
+		Assert.assertTrue(map.containsKey(0));
+		Assert.assertEquals(5L, map.get(0, -1));
+		Assert.assertTrue(map.remove(0));
+		Assert.assertFalse(map.containsKey(0));
+		Assert.assertEquals(0, map.size());
+	}
+	
+	@Test
+	public void put_shouldWrapAroundTheEndOfTheTable() {
+		IntLongHashMap map = new IntLongHashMap();
+		Map<Integer, Long> expected = new HashMap<Integer, Long>();
+		for (int key : keysAtSlot(MASK, 3)) {
+			map.put(key, key * 10L);
+			expected.put(key, key * 10L);
+		}
+		
+		assertContainsOnly(map, expected);
+	}
+	
+	@Test
+	public void remove_shouldShiftBackTheEntriesOfAChainWrappingAroundTheTable() {
+		// a cluster from slot 14 over the end of the table: two keys of slot 14, then keys of 15 and 0
+		List<Integer> chain = new ArrayList<Integer>();
+		chain.addAll(keysAtSlot(MASK - 1, 2));
+		chain.addAll(keysAtSlot(MASK, 2));
+		chain.addAll(keysAtSlot(0, 1));
+		
+		for (int removed = 0; removed < chain.size(); removed++) {
+			IntLongHashMap map = new IntLongHashMap();
+			Map<Integer, Long> expected = new HashMap<Integer, Long>();
+			for (int key : chain) {
+				map.put(key, key * 10L);
+				expected.put(key, key * 10L);
+			}
+			
+			Assert.assertTrue(map.remove(chain.get(removed)));
+			expected.remove(chain.get(removed));
+			
+			assertContainsOnly(map, expected);
+			Assert.assertFalse(map.containsKey(chain.get(removed)));
+		}
+	}
+	
+	@Test
+	public void remove_shouldKeepLaterKeysReachableWhenTheWholeChainIsRemoved() {
+		List<Integer> chain = new ArrayList<Integer>();
+		chain.addAll(keysAtSlot(MASK, 3));
+		chain.addAll(keysAtSlot(1, 2));
+		IntLongHashMap map = new IntLongHashMap();
+		Map<Integer, Long> expected = new HashMap<Integer, Long>();
+		for (int key : chain) {
+			map.put(key, key * 10L);
+			expected.put(key, key * 10L);
+		}
+		
+		for (int key : chain) {
+			Assert.assertTrue(map.remove(key));
+			Assert.assertFalse(map.remove(key));
+			expected.remove(key);
+			assertContainsOnly(map, expected);
+		}
+	}
+	
+	@Test
+	public void remove_shouldMatchAHashMapOverRandomOperations() {
+		Random random = new Random(42);
+		IntLongHashMap map = new IntLongHashMap();
+		Map<Integer, Long> expected = new HashMap<Integer, Long>();
+		for (int i = 0; i < 100000; i++) {
+			int key = random.nextInt(2000);
+			if (random.nextInt(3) == 0) {
+				Assert.assertEquals(expected.remove(key) != null, map.remove(key));
+			} else {
+				long value = random.nextLong();
+				Assert.assertEquals(expected.put(key, value) == null, map.put(key, value));
+			}
+		}
+		
+		assertContainsOnly(map, expected);
+	}
+	
+}
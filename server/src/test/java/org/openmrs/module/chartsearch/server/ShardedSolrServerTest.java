@@ -0,0 +1,239 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.embedded.JettySolrRunner;
+import org.apache.solr.client.solrj.impl.HttpSolrServer;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs three cores in an in-process Jetty, so that distributed searches go over HTTP as they do
+ * between real shards while the test stays offline.
+ */
+public class ShardedSolrServerTest {
+	
+	private static final int SHARDS_COUNT = 3;
+	
+	private static File solrHome;
+	
+	private static JettySolrRunner jetty;
+	
+	private static List<SolrServer> shards;
+	
+	private static ShardedSolrServer server;
+	
+	@BeforeClass
+	public static void setUp() throws Exception {
+		solrHome = new File(System.getProperty("java.io.tmpdir"), "chartsearch-shards-" + UUID.randomUUID());
+		FileUtils.copyDirectory(new File(ShardedSolrServerTest.class.getResource("/sharded-solr").toURI()), solrHome);
+		jetty = new JettySolrRunner(solrHome.getPath(), "/solr", 0);
+		jetty.start();
+		
+		shards = new ArrayList<SolrServer>();
+		List<String> shardUrls = new ArrayList<String>();
+		for (int i = 0; i < SHARDS_COUNT; i++) {
+			String url = "http://127.0.0.1:" + jetty.getLocalPort() + "/solr/shard" + i;
+			shards.add(new HttpSolrServer(url));
+			shardUrls.add(url);
+		}
+		server = new ShardedSolrServer(shards, shardUrls);
+	}
+	
+	@AfterClass
+	public static void tearDown() throws Exception {
+		if (server != null) {
+			server.shutdown();
+		}
+		if (jetty != null) {
+			jetty.stop();
+		}
+		FileUtils.deleteQuietly(solrHome);
+	}
+	
+	@Before
+	public void clearIndex() throws Exception {
+		for (SolrServer shard : shards) {
+			shard.deleteByQuery("*:*");
+			shard.commit();
+		}
+	}
+	
+	@Test
+	public void getShardIndex_shouldSpreadPatientsEvenlyOverTheShards() {
+		int[] counts = new int[SHARDS_COUNT];
+		for (int patientId = 1; patientId <= 3000; patientId++) {
+			int index = ShardedSolrServer.getShardIndex(patientId, SHARDS_COUNT);
+			Assert.assertTrue(index >= 0 && index < SHARDS_COUNT);
+			Assert.assertEquals(index, ShardedSolrServer.getShardIndex(patientId, SHARDS_COUNT));
+			counts[index]++;
+		}
+		for (int count : counts) {
+			Assert.assertTrue("Uneven shard: " + count, count > 900 && count < 1100);
+		}
+	}
+	
+	@Test
+	public void add_shouldRouteDocumentsToTheShardOwningThePatient() throws Exception {
+		List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+		for (int patientId = 1; patientId <= 30; patientId++) {
+			documents.add(newDocument("obs-" + patientId, "person_id", patientId));
+			documents.add(newDocument("allergy-" + patientId, "patient_id", patientId));
+		}
+		SolrInputDocument form = new SolrInputDocument();
+		form.addField("id", "form-1");
+		form.addField("form_name", "Vitals");
+		documents.add(form);
+		
+		server.add(documents);
+		server.commit();
+		
+		for (int patientId = 1; patientId <= 30; patientId++) {
+			int owner = ShardedSolrServer.getShardIndex(patientId, SHARDS_COUNT);
+			for (int i = 0; i < SHARDS_COUNT; i++) {
+				long expected = i == owner ? 2 : 0;
+				Assert.assertEquals(expected, count(shards.get(i), "person_id:" + patientId + " OR patient_id:" + patientId));
+			}
+		}
+		Assert.assertEquals(1, count(shards.get(0), "id:form-1"));
+	}
+	
+	@Test
+	public void commit_shouldReachEveryShard() throws Exception {
+		for (int patientId = 1; patientId <= 30; patientId++) {
+			server.add(newDocument("obs-" + patientId, "person_id", patientId));
+		}
+		
+		server.commit();
+		
+		long total = 0;
+		for (SolrServer shard : shards) {
+			long count = count(shard, "*:*");
+			Assert.assertTrue(count > 0);
+			total += count;
+		}
+		Assert.assertEquals(30, total);
+	}
+	
+	@Test
+	public void deleteByQuery_shouldReachEveryShard() throws Exception {
+		for (int patientId = 1; patientId <= 30; patientId++) {
+			server.add(newDocument("obs-" + patientId, "person_id", patientId));
+		}
+		server.commit();
+		
+		server.deleteByQuery("person_id:[1 TO 20]");
+		server.commit();
+		
+		long total = 0;
+		for (SolrServer shard : shards) {
+			total += count(shard, "person_id:[1 TO 20]");
+		}
+		Assert.assertEquals(0, total);
+		Assert.assertEquals(10, count(server, "*:*"));
+	}
+	
+	@Test
+	public void query_shouldGatherTheResultsOfAllShardsForSearchesAcrossPatients() throws Exception {
+		for (int patientId = 1; patientId <= 30; patientId++) {
+			server.add(newDocument("obs-" + patientId, "person_id", patientId));
+		}
+		server.commit();
+		
+		// every shard takes its turn at gathering
+		for (int i = 0; i < SHARDS_COUNT; i++) {
+			Assert.assertEquals(30, count(server, "*:*"));
+		}
+	}
+	
+	@Test
+	public void query_shouldSendSearchesOfOnePatientToTheOwningShardOnly() throws Exception {
+		int patientId = 7;
+		server.add(newDocument("obs-7", "person_id", patientId));
+		// the same patient id on another shard, which the search must not see
+		int other = (ShardedSolrServer.getShardIndex(patientId, SHARDS_COUNT) + 1) % SHARDS_COUNT;
+		shards.get(other).add(newDocument("stray-7", "person_id", patientId));
+		server.commit();
+		
+		SolrQuery query = new SolrQuery("*:*");
+		query.addFilterQuery("person_id:" + patientId);
+		Assert.assertEquals(1, server.query(query).getResults().getNumFound());
+		Assert.assertEquals("obs-7", server.query(query).getResults().get(0).getFieldValue("id"));
+	}
+	
+	@Test
+	public void request_shouldSendPatientCommandsToTheOwningShard() throws Exception {
+		for (int patientId = 1; patientId <= 10; patientId++) {
+			ModifiableSolrParams params = new ModifiableSolrParams();
+			params.set("command", ConfigCommands.PATIENT_STATE);
+			params.set("personId", patientId);
+			
+			Assert.assertEquals("shard" + ShardedSolrServer.getShardIndex(patientId, SHARDS_COUNT), command(params)
+			        .get(StubDataImportHandler.CORE));
+		}
+	}
+	
+	@Test
+	public void request_shouldSendTheGlobalImportToTheFirstShardOnly() throws Exception {
+		ModifiableSolrParams params = new ModifiableSolrParams();
+		params.set("command", ConfigCommands.IMPORT_GLOBAL);
+		
+		Assert.assertEquals("shard0", command(params).get(StubDataImportHandler.CORE));
+	}
+	
+	@Test
+	public void request_shouldMergeTheStatsOfAllShards() throws Exception {
+		ModifiableSolrParams params = new ModifiableSolrParams();
+		params.set("command", ConfigCommands.STATS);
+		
+		NamedList<Object> stats = command(params);
+		
+		Assert.assertEquals(600L, ((Number) stats.get(ConfigCommands.Labels.PRUNE_TIME)).longValue());
+		Assert.assertEquals(60L, ((Number) stats.get(ConfigCommands.Labels.SEARCH_ACCESS_COUNT)).longValue());
+		Assert.assertEquals(30L, ((Number) stats.get(ConfigCommands.Labels.SEARCH_HIT_COUNT)).longValue());
+		Assert.assertEquals(0.5, ((Number) stats.get(ConfigCommands.Labels.SEARCH_HIT_RATIO)).doubleValue(), 0.0001);
+		Assert.assertEquals(50L, ((Number) stats.get(ConfigCommands.Labels.PATIENT_INFO_LOAD_TIME)).longValue());
+		Assert.assertEquals(SHARDS_COUNT, ((List<?>) stats.get(ConfigCommands.Labels.DAEMON_STATES)).size());
+	}
+	
+	private static SolrInputDocument newDocument(String id, String patientField, int patientId) {
+		SolrInputDocument document = new SolrInputDocument();
+		document.addField("id", id);
+		document.addField(patientField, patientId);
+		return document;
+	}
+	
+	private static long count(SolrServer solrServer, String query) throws Exception {
+		return solrServer.query(new SolrQuery(query)).getResults().getNumFound();
+	}
+	
+	private static NamedList<Object> command(ModifiableSolrParams params) throws Exception {
+		QueryRequest request = new QueryRequest(params, SolrRequest.METHOD.GET);
+		request.setPath("/csdataimport");
+		return server.request(request);
+	}
+	
+}
@@ -0,0 +1,64 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.chartsearch.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.solr.handler.RequestHandlerBase;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+
+/**
+ * Stands in for the chart search data import handler in {@link ShardedSolrServerTest}. It tells
+ * which core answered and reports stats which differ by shard, without a database.
+ */
+public class StubDataImportHandler extends RequestHandlerBase {
+	
+	public static final String CORE = "core";
+	
+	@Override
+	public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
+		String coreName = req.getCore().getName();
+		rsp.add(CORE, coreName);
+		if (!ConfigCommands.STATS.equals(req.getParams().get("command")))
+			return;
+		
+		// shard n had 10 * (n + 1) accesses and 10 hits
+		int shard = Integer.parseInt(coreName.substring(coreName.length() - 1));
+		long accessCount = 10L * (shard + 1);
+		long hitCount = 10L;
+		
+		List<Object> daemonStates = new ArrayList<Object>();
+		HashMap<String, Object> daemonState = new HashMap<String, Object>();
+		daemonState.put(ConfigCommands.Labels.DAEMON_ID, shard);
+		daemonState.put(ConfigCommands.Labels.DAEMON_STATUS, ConfigCommands.Labels.IDLE);
+		daemonStates.add(daemonState);
+		
+		rsp.add(ConfigCommands.Labels.DAEMON_STATES, daemonStates);
+		rsp.add(ConfigCommands.Labels.PRUNE_TIME, 100L * (shard + 1));
+		rsp.add(ConfigCommands.Labels.SEARCH_ACCESS_COUNT, accessCount);
+		rsp.add(ConfigCommands.Labels.SEARCH_HIT_COUNT, hitCount);
+		rsp.add(ConfigCommands.Labels.SEARCH_HIT_RATIO, (double) hitCount / accessCount);
+		rsp.add(ConfigCommands.Labels.PATIENT_INFO_LOAD_TIME, shard == 1 ? 50L : 5L);
+	}
+	
+	@Override
+	public String getDescription() {
+		return "Chart search handler stub";
+	}
+	
+	@Override
+	public String getSource() {
+		return "";
+	}
+	
+}